@@ -5,11 +5,13 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @SpringBootApplication
 @MapperScan("com.hospital.registration.mapper")
 @EnableAsync
+@EnableScheduling
 public class HospitalRegistrationApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,26 @@
+package com.hospital.registration.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @title: DataScope
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 数据权限注解，标注在Mapper方法上
+ * 执行SQL时按当前登录身份为指定表追加过滤条件：超级管理员不过滤，医生按本人（或本科室）过滤，其他身份及无登录身份无数据
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DataScope {
+
+    // 需要过滤的表名（SQL中有别名时自动使用别名）
+    String table();
+
+    // 医生ID列，为空则不按医生过滤
+    String doctorColumn() default "";
+
+    // 科室ID列，doctorColumn为空时按科室过滤
+    String departmentColumn() default "";
+}
@@ -0,0 +1,26 @@
+package com.hospital.registration.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @title: Idempotent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 幂等注解，标注在Controller方法上
+ * 请求携带Idempotency-Key请求头（或指定参数）时，相同Key的重复请求直接返回首次成功的结果
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Idempotent {
+
+    // 业务范围，如 registration:create
+    String scope();
+
+    // 未携带请求头时作为幂等Key的方法参数名，为空则不做幂等
+    String keyParam() default "";
+
+    // 结果保留时间（秒）
+    long ttlSeconds() default 86400;
+}
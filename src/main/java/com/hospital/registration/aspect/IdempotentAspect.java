@@ -0,0 +1,132 @@
+package com.hospital.registration.aspect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.registration.annotation.Idempotent;
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.Result;
+import com.hospital.registration.common.ResultCode;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+/**
+ * @title: IdempotentAspect
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 幂等切面
+ * 首次请求以SETNX占位后执行，成功结果写回同一Key；重复请求只读一次Redis即返回，不再进入业务和数据库。
+ * 执行失败（抛异常或返回失败结果）时删除占位，允许客户端重试。
+ */
+@Slf4j
+@Aspect
+@Component
+public class IdempotentAspect {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String KEY_PREFIX = "idempotent:";
+    private static final String PROCESSING = "PROCESSING";
+    private static final int MAX_KEY_LENGTH = 64;
+    // 处理中占位的过期时间，防止进程异常退出后占位无法释放
+    private static final Duration PROCESSING_TTL = Duration.ofMinutes(1);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 构造器注入
+     */
+    public IdempotentAspect(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Around("@annotation(idempotent)")
+    public Object around(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
+        String redisKey = buildKey(joinPoint, idempotent);
+        if (redisKey == null) {
+            return joinPoint.proceed();
+        }
+
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(redisKey, PROCESSING, PROCESSING_TTL);
+        if (!Boolean.TRUE.equals(acquired)) {
+            String stored = redisTemplate.opsForValue().get(redisKey);
+            if (stored == null || PROCESSING.equals(stored)) {
+                log.info("重复请求处理中 - Key: {}", redisKey);
+                throw new BusinessException(ResultCode.REQUEST_PROCESSING.getCode(), "请求正在处理中，请勿重复提交");
+            }
+            log.info("重复请求，返回首次结果 - Key: {}", redisKey);
+            return objectMapper.readValue(stored, Result.class);
+        }
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            redisTemplate.delete(redisKey);
+            throw e;
+        }
+
+        if (result instanceof Result && Boolean.TRUE.equals(((Result<?>) result).getSuccess())) {
+            try {
+                redisTemplate.opsForValue().set(redisKey, objectMapper.writeValueAsString(result),
+                        Duration.ofSeconds(idempotent.ttlSeconds()));
+            } catch (Exception e) {
+                log.error("幂等结果保存失败 - Key: {}, 错误: {}", redisKey, e.getMessage());
+                redisTemplate.delete(redisKey);
+            }
+        } else {
+            redisTemplate.delete(redisKey);
+        }
+        return result;
+    }
+
+    /**
+     * 构建幂等Key：idempotent:{scope}:{userId}:{key}，未提供Key时返回null
+     */
+    private String buildKey(ProceedingJoinPoint joinPoint, Idempotent idempotent) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        HttpServletRequest request = attributes != null ? attributes.getRequest() : null;
+
+        String key = request != null ? request.getHeader(HEADER) : null;
+        if ((key == null || key.isBlank()) && !idempotent.keyParam().isEmpty()) {
+            key = getParamValue(joinPoint, idempotent.keyParam());
+        }
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException(ResultCode.PARAM_ERROR.getCode(), "幂等Key过长");
+        }
+
+        Object userId = request != null ? request.getAttribute("userId") : null;
+        return KEY_PREFIX + idempotent.scope() + ":" + (userId != null ? userId : "-") + ":" + key;
+    }
+
+    /**
+     * 按参数名取方法参数值
+     */
+    private String getParamValue(ProceedingJoinPoint joinPoint, String paramName) {
+        String[] names = ((MethodSignature) joinPoint.getSignature()).getParameterNames();
+        Object[] args = joinPoint.getArgs();
+        if (names == null) {
+            return null;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(paramName) && args[i] != null) {
+                return String.valueOf(args[i]);
+            }
+        }
+        return null;
+    }
+}
@@ -2,10 +2,9 @@ package com.hospital.registration.aspect;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hospital.registration.annotation.OperationLog;
-import com.hospital.registration.common.Constants;
+import com.hospital.registration.common.UserPrincipal;
 import com.hospital.registration.entity.SysOperationLog;
 import com.hospital.registration.service.SysOperationLogService;
-import com.hospital.registration.utils.JwtUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -35,9 +34,6 @@ public class OperationLogAspect {
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Autowired
-    private JwtUtil jwtUtil;
-
     /**
      * 环绕通知，记录操作日志
      *
@@ -85,22 +81,11 @@ public class OperationLogAspect {
         // 获取用户信息和IP
         if (request != null) {
             log.setIp(getIpAddress(request));
-            // 从token中获取用户信息
-            String token = request.getHeader("Authorization");
-
-            if (token != null && !token.isEmpty()) {
-                // 去掉 Bearer 前缀
-                if (token.startsWith(Constants.Jwt.PREFIX)) {
-                    token = token.substring(7);
-                }
-                try {
-                    Long userId = jwtUtil.getUserIdFromToken(token);
-                    String username = jwtUtil.getUsernameFromToken(token);
-                    log.setUserId(userId);
-                    log.setUsername(username);
-                } catch (Exception e) {
-                    // token解析失败，忽略
-                }
+            // 从登录身份中获取用户信息（由AuthenticationFilter解析）
+            UserPrincipal principal = (UserPrincipal) request.getAttribute(UserPrincipal.ATTRIBUTE);
+            if (principal != null) {
+                log.setUserId(principal.getUserId());
+                log.setUsername(principal.getUsername());
             }
         }
 
@@ -0,0 +1,129 @@
+package com.hospital.registration.cache;
+
+import com.hospital.registration.event.PermissionChangedEvent;
+import com.hospital.registration.event.RbacReloadedEvent;
+import com.hospital.registration.utils.LocalCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * @title: PermissionCache
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 用户权限缓存
+ * 每个用户缓存一份不可变的角色编码、权限编码集合、超级管理员标记和数据权限范围（医生/科室），权限校验命中时不访问数据库；
+ * 由RbacSnapshot计算，角色、权限、用户角色、医生绑定变更提交后失效，任一节点的RBAC快照切换后全部失效。
+ */
+@Slf4j
+@Component
+public class PermissionCache {
+
+    private static final long TTL_MILLIS = 60_000L;
+
+    private final LocalCache<Long, UserAuthority> authorityCache = new LocalCache<>(TTL_MILLIS, 10000);
+
+    // 失效代数：加载期间发生失效时不回填，避免旧数据覆盖
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 获取用户权限，未命中时调用loader加载
+     */
+    public UserAuthority get(Long userId, Function<Long, UserAuthority> loader) {
+        UserAuthority authority = authorityCache.get(userId);
+        if (authority != null) {
+            return authority;
+        }
+        long current = generation.get();
+        authority = loader.apply(userId);
+        if (generation.get() == current) {
+            authorityCache.put(userId, authority);
+        }
+        return authority;
+    }
+
+    /**
+     * 权限变化事务提交后失效
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        if (event.getUserId() == null) {
+            invalidateAll();
+        } else {
+            generation.incrementAndGet();
+            authorityCache.invalidate(event.getUserId());
+            log.info("权限缓存已失效 - 用户ID: {}", event.getUserId());
+        }
+    }
+
+    /**
+     * RBAC快照切换后失效（包括其他节点的变更）
+     */
+    @EventListener
+    public void onRbacReloaded(RbacReloadedEvent event) {
+        if (event.getUserId() == null) {
+            invalidateAll();
+        } else {
+            generation.incrementAndGet();
+            authorityCache.invalidate(event.getUserId());
+        }
+    }
+
+    /**
+     * 全部失效
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        authorityCache.invalidateAll();
+        log.info("权限缓存已全部失效");
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", authorityCache.size());
+        stats.put("hitCount", authorityCache.getHitCount());
+        stats.put("missCount", authorityCache.getMissCount());
+        stats.put("hitRate", authorityCache.getHitRate());
+        return stats;
+    }
+
+    /**
+     * 用户权限（不可变）
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class UserAuthority {
+
+        // 角色编码列表
+        private final List<String> roleCodes;
+
+        // 权限编码集合
+        private final Set<String> permissionCodes;
+
+        // 权限位图（按PermissionRequirementIndex序号）
+        private final long[] permissionBits;
+
+        // 是否超级管理员
+        private final boolean superAdmin;
+
+        // 绑定的医生ID（非医生为null）
+        private final Long doctorId;
+
+        // 医生所属科室ID（非医生为null）
+        private final Long departmentId;
+    }
+}
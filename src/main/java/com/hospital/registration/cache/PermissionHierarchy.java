@@ -0,0 +1,148 @@
+package com.hospital.registration.cache;
+
+import com.hospital.registration.entity.Permission;
+import com.hospital.registration.event.RbacReloadedEvent;
+import com.hospital.registration.mapper.PermissionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @title: PermissionHierarchy
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 权限层级结构（进程内）
+ * 一次查询加载全部未删除权限，建立 ID→权限 和 父ID→子ID列表 两张表，
+ * 权限树构建、级联启用/禁用的父子收集均在内存中线性完成，不再逐节点查库。
+ * 任一节点权限变更后随RBAC快照切换重建。
+ */
+@Slf4j
+@Component
+public class PermissionHierarchy {
+
+    private static final long TTL_MILLIS = 300_000L;
+
+    private final PermissionMapper permissionMapper;
+
+    private volatile Snapshot snapshot;
+
+    // 失效代数：加载期间发生失效时不回填，避免旧数据覆盖
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 构造器注入
+     */
+    public PermissionHierarchy(PermissionMapper permissionMapper) {
+        this.permissionMapper = permissionMapper;
+    }
+
+    /**
+     * 所有未删除权限（按排序号升序）
+     */
+    public List<Permission> getAll() {
+        return current().permissions;
+    }
+
+    /**
+     * 收集所有子孙权限ID（不含自身，已存在的ID不重复添加）
+     */
+    public void collectDescendantIds(Long id, Collection<Long> result) {
+        Map<Long, List<Long>> childrenByParent = current().childrenByParent;
+        Deque<Long> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            List<Long> children = childrenByParent.get(stack.pop());
+            if (children == null) {
+                continue;
+            }
+            for (Long childId : children) {
+                if (result.add(childId)) {
+                    stack.push(childId);
+                }
+            }
+        }
+    }
+
+    /**
+     * 收集所有祖先权限ID（不含自身，已存在的ID不重复添加）
+     */
+    public void collectAncestorIds(Long id, Collection<Long> result) {
+        Map<Long, Permission> byId = current().byId;
+        Permission permission = byId.get(id);
+        while (permission != null) {
+            Long parentId = permission.getParentId();
+            if (parentId == null || parentId == 0 || !result.add(parentId)) {
+                return;
+            }
+            permission = byId.get(parentId);
+        }
+    }
+
+    /**
+     * RBAC快照整体重新加载后重建（包括其他节点的变更，单用户变更不影响层级）
+     */
+    @EventListener
+    public void onRbacReloaded(RbacReloadedEvent event) {
+        if (event.getUserId() != null) {
+            return;
+        }
+        generation.incrementAndGet();
+        snapshot = null;
+        log.debug("权限层级已失效");
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.loadedAt < TTL_MILLIS) {
+            return current;
+        }
+        long gen = generation.get();
+        current = load();
+        if (generation.get() == gen) {
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        List<Permission> permissions = permissionMapper.selectAllPermissions();
+        Map<Long, Permission> byId = new HashMap<>(permissions.size() * 2);
+        Map<Long, List<Long>> childrenByParent = new HashMap<>();
+        for (Permission permission : permissions) {
+            byId.put(permission.getId(), permission);
+            Long parentId = permission.getParentId() != null ? permission.getParentId() : 0L;
+            childrenByParent.computeIfAbsent(parentId, key -> new ArrayList<>()).add(permission.getId());
+        }
+        log.info("权限层级已加载 - 共 {} 个权限", permissions.size());
+        return new Snapshot(List.copyOf(permissions), byId, childrenByParent, System.currentTimeMillis());
+    }
+
+    /**
+     * 层级快照（加载后只读）
+     */
+    private static final class Snapshot {
+
+        private final List<Permission> permissions;
+        private final Map<Long, Permission> byId;
+        private final Map<Long, List<Long>> childrenByParent;
+        private final long loadedAt;
+
+        private Snapshot(List<Permission> permissions, Map<Long, Permission> byId,
+                         Map<Long, List<Long>> childrenByParent, long loadedAt) {
+            this.permissions = permissions;
+            this.byId = byId;
+            this.childrenByParent = childrenByParent;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hospital.registration.cache;
+
+import com.hospital.registration.common.RequirePermission;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @title: PermissionRequirementIndex
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 接口权限索引
+ * 启动时扫描所有Controller方法上的@RequirePermission，为每个用到的权限编码分配序号，
+ * 用户权限据此转换为位图，接口鉴权变为一次Map查找加一次位运算，不再逐请求反射取注解、比较字符串。
+ */
+@Slf4j
+@Component
+public class PermissionRequirementIndex {
+
+    // 接口方法 -> 所需权限序号
+    private volatile Map<Method, Integer> methodOrdinals = Collections.emptyMap();
+
+    // 权限编码 -> 序号
+    private volatile Map<String, Integer> codeOrdinals = Collections.emptyMap();
+
+    private volatile boolean ready;
+
+    private final PermissionCache permissionCache;
+
+    /**
+     * 构造器注入
+     */
+    public PermissionRequirementIndex(PermissionCache permissionCache) {
+        this.permissionCache = permissionCache;
+    }
+
+    /**
+     * 容器刷新完成后构建索引
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void build(ContextRefreshedEvent event) {
+        Map<Method, Integer> methods = new HashMap<>();
+        Map<String, Integer> codes = new HashMap<>();
+        for (RequestMappingHandlerMapping mapping :
+                event.getApplicationContext().getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+            for (HandlerMethod handlerMethod : mapping.getHandlerMethods().values()) {
+                RequirePermission requirePermission = handlerMethod.getMethodAnnotation(RequirePermission.class);
+                if (requirePermission == null) {
+                    continue;
+                }
+                Integer ordinal = codes.computeIfAbsent(requirePermission.value(), k -> codes.size());
+                methods.put(handlerMethod.getMethod(), ordinal);
+            }
+        }
+        this.methodOrdinals = methods;
+        this.codeOrdinals = codes;
+        this.ready = true;
+        log.info("接口权限索引构建完成 - 接口数: {}, 权限编码数: {}", methods.size(), codes.size());
+        // 已缓存的用户权限位图按新索引重新计算
+        permissionCache.invalidateAll();
+    }
+
+    /**
+     * 索引是否已构建
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 获取接口所需权限序号，无需权限时返回-1
+     */
+    public int getOrdinal(Method method) {
+        Integer ordinal = methodOrdinals.get(method);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * 将权限编码集合转换为位图（只包含接口用到的权限编码）
+     */
+    public long[] toBits(Set<String> permissionCodes) {
+        Map<String, Integer> ordinals = codeOrdinals;
+        long[] bits = new long[(ordinals.size() + 63) >>> 6];
+        for (String code : permissionCodes) {
+            Integer ordinal = ordinals.get(code);
+            if (ordinal != null) {
+                bits[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 位图中是否包含指定序号
+     */
+    public static boolean test(long[] bits, int ordinal) {
+        int index = ordinal >>> 6;
+        return index < bits.length && (bits[index] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * 已索引的权限编码（按序号排列）
+     */
+    public List<String> getCodes() {
+        List<String> codes = new ArrayList<>(Collections.nCopies(codeOrdinals.size(), (String) null));
+        codeOrdinals.forEach((code, ordinal) -> codes.set(ordinal, code));
+        return codes;
+    }
+}
@@ -0,0 +1,381 @@
+package com.hospital.registration.cache;
+
+import com.hospital.registration.entity.Doctor;
+import com.hospital.registration.entity.Permission;
+import com.hospital.registration.entity.Role;
+import com.hospital.registration.entity.RolePermission;
+import com.hospital.registration.entity.UserRole;
+import com.hospital.registration.event.PermissionChangedEvent;
+import com.hospital.registration.event.RbacReloadedEvent;
+import com.hospital.registration.mapper.DoctorMapper;
+import com.hospital.registration.mapper.PermissionMapper;
+import com.hospital.registration.mapper.RoleMapper;
+import com.hospital.registration.mapper.RolePermissionMapper;
+import com.hospital.registration.mapper.UserRoleMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @title: RbacSnapshot
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: RBAC快照（每个节点一份，带版本号）
+ * 快照包含角色、权限、用户→角色、角色→权限及用户→医生绑定，加载完成后整体替换（写时复制），
+ * 权限校验与用户角色查询只读取当前快照，不等待写操作也不访问数据库。
+ * 权限变更提交后在Redis中递增版本号并广播：单个用户的变更（分配角色、注册、医生绑定）只重新加载该用户，
+ * 其余变更整体重新加载；其他节点收到广播后按同样方式更新，版本号不连续或定时比对发现落后时整体重新加载。
+ */
+@Slf4j
+@Component
+public class RbacSnapshot implements MessageListener {
+
+    public static final String VERSION_KEY = "rbac:version";
+    public static final String CHANGE_CHANNEL = "rbac:changed";
+
+    private final RoleMapper roleMapper;
+    private final PermissionMapper permissionMapper;
+    private final RolePermissionMapper rolePermissionMapper;
+    private final UserRoleMapper userRoleMapper;
+    private final DoctorMapper doctorMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile Snapshot current;
+
+    private final Object reloadLock = new Object();
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    /**
+     * 构造器注入
+     */
+    public RbacSnapshot(RoleMapper roleMapper,
+                        PermissionMapper permissionMapper,
+                        RolePermissionMapper rolePermissionMapper,
+                        UserRoleMapper userRoleMapper,
+                        DoctorMapper doctorMapper,
+                        StringRedisTemplate redisTemplate,
+                        ApplicationEventPublisher eventPublisher) {
+        this.roleMapper = roleMapper;
+        this.permissionMapper = permissionMapper;
+        this.rolePermissionMapper = rolePermissionMapper;
+        this.userRoleMapper = userRoleMapper;
+        this.doctorMapper = doctorMapper;
+        this.redisTemplate = redisTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 当前快照（首次访问时加载）
+     */
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (reloadLock) {
+            if (current == null) {
+                reload(readVersion());
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 应用启动完成后加载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            get();
+        } catch (Exception e) {
+            log.error("启动时加载RBAC快照失败，将在首次权限校验时加载 - 错误: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 本节点权限变更提交后：递增版本号、更新本节点快照并通知其他节点
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPermissionChanged(PermissionChangedEvent event) {
+        long version;
+        try {
+            Long next = redisTemplate.opsForValue().increment(VERSION_KEY);
+            version = next != null ? next : localVersion() + 1;
+        } catch (Exception e) {
+            log.error("RBAC版本号递增失败，其他节点将在定时比对时生效 - 错误: {}", e.getMessage());
+            version = localVersion() + 1;
+        }
+        apply(version, event.getUserId());
+        try {
+            String body = event.getUserId() == null ? String.valueOf(version) : version + "|" + event.getUserId();
+            redisTemplate.convertAndSend(CHANGE_CHANNEL, body);
+        } catch (Exception e) {
+            log.error("RBAC变更通知发送失败 - 版本: {}, 错误: {}", version, e.getMessage());
+        }
+    }
+
+    /**
+     * 接收其他节点的变更通知，消息格式：版本号[|用户ID]
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf('|');
+        try {
+            long version = Long.parseLong(index > 0 ? body.substring(0, index) : body);
+            Long userId = index > 0 ? Long.valueOf(body.substring(index + 1)) : null;
+            if (version > localVersion()) {
+                apply(version, userId);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("RBAC变更消息格式错误: {}", body);
+        }
+    }
+
+    /**
+     * 定时比对版本号，兜底丢失的变更通知
+     */
+    @Scheduled(fixedDelay = 5000L, initialDelay = 5000L)
+    public void checkVersion() {
+        try {
+            reloadIfNewer(readVersion());
+        } catch (Exception e) {
+            log.warn("RBAC版本号比对失败 - 错误: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 快照统计
+     */
+    public Map<String, Object> getStats() {
+        Snapshot snapshot = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", snapshot != null ? snapshot.version : null);
+        stats.put("loadedAt", snapshot != null ? snapshot.loadedAt : null);
+        stats.put("roles", snapshot != null ? snapshot.roles.size() : 0);
+        stats.put("permissions", snapshot != null ? snapshot.permissions.size() : 0);
+        stats.put("users", snapshot != null ? snapshot.userRoleIds.size() : 0);
+        stats.put("reloadCount", reloadCount.get());
+        return stats;
+    }
+
+    /**
+     * 按变更范围更新快照：版本号紧接当前版本的单用户变更只重新加载该用户，否则整体重新加载
+     */
+    private void apply(long version, Long userId) {
+        synchronized (reloadLock) {
+            Snapshot snapshot = current;
+            if (snapshot == null) {
+                reload(version);
+            } else if (version <= snapshot.version) {
+                // 已有更新的整体加载覆盖了此次变更
+                log.debug("RBAC快照已是最新 - 当前版本: {}, 变更版本: {}", snapshot.version, version);
+            } else if (userId != null && version == snapshot.version + 1) {
+                reloadUser(snapshot, version, userId);
+            } else {
+                reload(version);
+            }
+        }
+    }
+
+    private void reloadIfNewer(long version) {
+        if (version <= localVersion()) {
+            return;
+        }
+        synchronized (reloadLock) {
+            if (version > localVersion()) {
+                reload(version);
+            }
+        }
+    }
+
+    private long localVersion() {
+        Snapshot snapshot = current;
+        return snapshot != null ? snapshot.version : -1L;
+    }
+
+    private long readVersion() {
+        try {
+            String value = redisTemplate.opsForValue().get(VERSION_KEY);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            log.warn("读取RBAC版本号失败，按本地版本加载 - 错误: {}", e.getMessage());
+            return Math.max(localVersion(), 0L);
+        }
+    }
+
+    /**
+     * 从数据库加载并替换快照（调用方持有reloadLock）
+     */
+    private void reload(long version) {
+        long start = System.currentTimeMillis();
+        Map<Long, Role> roles = new HashMap<>();
+        for (Role role : roleMapper.selectList(null)) {
+            roles.put(role.getId(), role);
+        }
+        List<Permission> permissions = permissionMapper.selectAllPermissions();
+        Map<Long, List<Long>> userRoleIds = new HashMap<>();
+        for (UserRole userRole : userRoleMapper.selectList(null)) {
+            userRoleIds.computeIfAbsent(userRole.getUserId(), key -> new ArrayList<>()).add(userRole.getRoleId());
+        }
+        Map<Long, Set<Long>> rolePermissionIds = new HashMap<>();
+        for (RolePermission rolePermission : rolePermissionMapper.selectList(null)) {
+            rolePermissionIds.computeIfAbsent(rolePermission.getRoleId(), key -> new LinkedHashSet<>())
+                    .add(rolePermission.getPermissionId());
+        }
+        Map<Long, Doctor> doctorsByUserId = new HashMap<>();
+        for (Doctor doctor : doctorMapper.selectList(null)) {
+            if (doctor.getUserId() != null) {
+                doctorsByUserId.put(doctor.getUserId(), doctor);
+            }
+        }
+
+        current = new Snapshot(version, start, roles, List.copyOf(permissions), userRoleIds,
+                rolePermissionIds, doctorsByUserId);
+        reloadCount.incrementAndGet();
+        log.info("RBAC快照已加载 - 版本: {}, 角色: {}, 权限: {}, 用户: {}, 耗时: {}ms", version, roles.size(),
+                permissions.size(), userRoleIds.size(), System.currentTimeMillis() - start);
+        eventPublisher.publishEvent(new RbacReloadedEvent(version, null));
+    }
+
+    /**
+     * 复制当前快照并替换单个用户的角色和医生绑定（调用方持有reloadLock）
+     */
+    private void reloadUser(Snapshot snapshot, long version, Long userId) {
+        Map<Long, List<Long>> userRoleIds = new HashMap<>(snapshot.userRoleIds);
+        List<Long> roleIds = userRoleMapper.selectRoleIdsByUserId(userId);
+        if (roleIds.isEmpty()) {
+            userRoleIds.remove(userId);
+        } else {
+            userRoleIds.put(userId, roleIds);
+        }
+        Map<Long, Doctor> doctorsByUserId = new HashMap<>(snapshot.doctorsByUserId);
+        Doctor doctor = doctorMapper.selectByUserId(userId);
+        if (doctor == null) {
+            doctorsByUserId.remove(userId);
+        } else {
+            doctorsByUserId.put(userId, doctor);
+        }
+
+        current = new Snapshot(version, System.currentTimeMillis(), snapshot.roles, snapshot.permissions,
+                userRoleIds, snapshot.rolePermissionIds, doctorsByUserId);
+        reloadCount.incrementAndGet();
+        log.info("RBAC快照已更新 - 版本: {}, 用户ID: {}", version, userId);
+        eventPublisher.publishEvent(new RbacReloadedEvent(version, userId));
+    }
+
+    /**
+     * RBAC快照（加载后只读）
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final long loadedAt;
+        private final Map<Long, Role> roles;
+        // 未删除的权限，按排序号升序
+        private final List<Permission> permissions;
+        private final Map<Long, List<Long>> userRoleIds;
+        private final Map<Long, Set<Long>> rolePermissionIds;
+        private final Map<Long, Doctor> doctorsByUserId;
+
+        private Snapshot(long version, long loadedAt, Map<Long, Role> roles, List<Permission> permissions,
+                         Map<Long, List<Long>> userRoleIds, Map<Long, Set<Long>> rolePermissionIds,
+                         Map<Long, Doctor> doctorsByUserId) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.roles = roles;
+            this.permissions = permissions;
+            this.userRoleIds = userRoleIds;
+            this.rolePermissionIds = rolePermissionIds;
+            this.doctorsByUserId = doctorsByUserId;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 用户的角色（未删除）
+         */
+        public List<Role> getRoles(Long userId) {
+            List<Long> roleIds = userRoleIds.getOrDefault(userId, Collections.emptyList());
+            List<Role> result = new ArrayList<>(roleIds.size());
+            for (Long roleId : roleIds) {
+                Role role = roles.get(roleId);
+                if (role != null) {
+                    result.add(role);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 用户的角色编码（未删除的角色）
+         */
+        public List<String> getRoleCodes(Long userId) {
+            List<Role> userRoles = getRoles(userId);
+            List<String> codes = new ArrayList<>(userRoles.size());
+            for (Role role : userRoles) {
+                codes.add(role.getRoleCode());
+            }
+            return codes;
+        }
+
+        /**
+         * 用户的已启用权限编码，按排序号升序
+         */
+        public List<String> getPermissionCodes(Long userId) {
+            List<Long> roleIds = userRoleIds.getOrDefault(userId, Collections.emptyList());
+            if (roleIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Set<Long>> grants = new ArrayList<>(roleIds.size());
+            for (Long roleId : roleIds) {
+                Set<Long> permissionIds = rolePermissionIds.get(roleId);
+                if (permissionIds != null) {
+                    grants.add(permissionIds);
+                }
+            }
+            List<String> codes = new ArrayList<>();
+            for (Permission permission : permissions) {
+                if (permission.getStatus() == null || permission.getStatus() != 1) {
+                    continue;
+                }
+                for (Set<Long> permissionIds : grants) {
+                    if (permissionIds.contains(permission.getId())) {
+                        codes.add(permission.getPermissionCode());
+                        break;
+                    }
+                }
+            }
+            return codes;
+        }
+
+        /**
+         * 用户绑定的医生（未绑定为null）
+         */
+        public Doctor getDoctor(Long userId) {
+            return doctorsByUserId.get(userId);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.hospital.registration.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.registration.event.ScheduleAvailabilityChangedEvent;
+import com.hospital.registration.utils.LocalCache;
+import com.hospital.registration.vo.ScheduleVO;
+import com.hospital.registration.vo.app.DetailTimeSlotVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @title: ScheduleAvailabilityCache
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 患者端排班号源缓存
+ * 一级缓存为进程内短TTL缓存，二级缓存为Redis；挂号、取消挂号、排班编辑提交后按排班/医生/科室失效。
+ * 其他节点的一级缓存不做广播失效，最多延迟一个一级缓存TTL。
+ * 同一节点内同一key的并发未命中由一级缓存合并为一次回源；二级缓存带版本号，失效时递增，
+ * 回源前读取的版本与写回时不一致则放弃写回，避免失效前读到的旧数据在失效后写回Redis。
+ */
+@Slf4j
+@Component
+public class ScheduleAvailabilityCache {
+
+    private static final String DOCTOR_KEY_PREFIX = "schedule:avail:doctor:";
+    private static final String DEPARTMENT_KEY_PREFIX = "schedule:avail:dept:";
+    private static final String SLOTS_KEY_PREFIX = "schedule:slots:";
+    private static final long L1_TTL_MILLIS = 5_000L;
+    private static final Duration L2_TTL = Duration.ofSeconds(30);
+    private static final String VERSION_KEY_SUFFIX = ":ver";
+    private static final Duration VERSION_TTL = Duration.ofDays(1);
+
+    /**
+     * 版本未变化时写回二级缓存
+     * KEYS[1]=缓存Hash, KEYS[2]=版本key; ARGV[1]=回源前读取的版本, ARGV[2]=字段, ARGV[3]=值, ARGV[4]=过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> PUT_IF_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end\n" +
+            "redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[4])\n" +
+            "return 1",
+            Long.class);
+
+    private static final TypeReference<List<ScheduleVO>> SCHEDULE_LIST_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<DetailTimeSlotVO>> SLOT_LIST_TYPE = new TypeReference<>() {};
+
+    private final LocalCache<String, List<ScheduleVO>> scheduleListCache = new LocalCache<>(L1_TTL_MILLIS, 2000);
+    private final LocalCache<Long, List<DetailTimeSlotVO>> detailSlotCache = new LocalCache<>(L1_TTL_MILLIS, 5000);
+    private final AtomicLong l2HitCount = new AtomicLong();
+    private final AtomicLong l2MissCount = new AtomicLong();
+    private final AtomicLong l2StaleSkipCount = new AtomicLong();
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 构造器注入
+     */
+    public ScheduleAvailabilityCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 医生可预约排班列表
+     */
+    public List<ScheduleVO> getAvailableByDoctor(Long doctorId, LocalDate startDate, LocalDate endDate,
+                                                 Supplier<List<ScheduleVO>> loader) {
+        String field = startDate + "_" + endDate;
+        return scheduleListCache.get("doctor:" + doctorId + ":" + field,
+                key -> getFromRedis(DOCTOR_KEY_PREFIX + doctorId, field, SCHEDULE_LIST_TYPE, loader));
+    }
+
+    /**
+     * 科室可预约排班列表
+     */
+    public List<ScheduleVO> getAvailableByDepartment(Long departmentId, LocalDate startDate, LocalDate endDate,
+                                                     Supplier<List<ScheduleVO>> loader) {
+        String field = startDate + "_" + endDate;
+        return scheduleListCache.get("dept:" + departmentId + ":" + field,
+                key -> getFromRedis(DEPARTMENT_KEY_PREFIX + departmentId, field, SCHEDULE_LIST_TYPE, loader));
+    }
+
+    /**
+     * 排班细分时段号源（与患者无关的部分）
+     */
+    public List<DetailTimeSlotVO> getDetailSlots(Long scheduleId, Supplier<List<DetailTimeSlotVO>> loader) {
+        return detailSlotCache.get(scheduleId,
+                key -> getFromRedis(SLOTS_KEY_PREFIX + scheduleId, "all", SLOT_LIST_TYPE, loader));
+    }
+
+    /**
+     * 号源变化后失效相关缓存（事务提交后执行，无事务时立即执行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(ScheduleAvailabilityChangedEvent event) {
+        if (event.getScheduleId() != null) {
+            detailSlotCache.invalidate(event.getScheduleId());
+            invalidateRedis(SLOTS_KEY_PREFIX + event.getScheduleId());
+        }
+        if (event.getDoctorId() != null) {
+            String prefix = "doctor:" + event.getDoctorId() + ":";
+            scheduleListCache.invalidateIf(key -> key.startsWith(prefix));
+            invalidateRedis(DOCTOR_KEY_PREFIX + event.getDoctorId());
+        }
+        if (event.getDepartmentId() != null) {
+            String prefix = "dept:" + event.getDepartmentId() + ":";
+            scheduleListCache.invalidateIf(key -> key.startsWith(prefix));
+            invalidateRedis(DEPARTMENT_KEY_PREFIX + event.getDepartmentId());
+        }
+        log.debug("排班号源缓存已失效 - 排班ID: {}, 医生ID: {}, 科室ID: {}",
+                event.getScheduleId(), event.getDoctorId(), event.getDepartmentId());
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scheduleListL1Hit", scheduleListCache.getHitCount());
+        stats.put("scheduleListL1Miss", scheduleListCache.getMissCount());
+        stats.put("scheduleListL1HitRate", scheduleListCache.getHitRate());
+        stats.put("detailSlotL1Hit", detailSlotCache.getHitCount());
+        stats.put("detailSlotL1Miss", detailSlotCache.getMissCount());
+        stats.put("detailSlotL1HitRate", detailSlotCache.getHitRate());
+        long l2Hit = l2HitCount.get();
+        long l2Total = l2Hit + l2MissCount.get();
+        stats.put("l2Hit", l2Hit);
+        stats.put("l2Miss", l2MissCount.get());
+        stats.put("l2HitRate", l2Total == 0 ? 0D : (double) l2Hit / l2Total);
+        stats.put("l2StaleSkip", l2StaleSkipCount.get());
+        return stats;
+    }
+
+    /**
+     * 读取二级缓存，未命中时回源数据库并按版本写回（Redis异常时直接回源）
+     * 由一级缓存的加载函数调用，同一节点同一key同时只有一个线程进入
+     */
+    private <T> T getFromRedis(String key, String field, TypeReference<T> type, Supplier<T> loader) {
+        String version = null;
+        try {
+            // 版本须在回源前读取：回源期间发生的失效会使版本变化，写回被放弃
+            String current = redisTemplate.opsForValue().get(key + VERSION_KEY_SUFFIX);
+            version = current != null ? current : "0";
+            Object json = redisTemplate.opsForHash().get(key, field);
+            if (json != null) {
+                l2HitCount.incrementAndGet();
+                return objectMapper.readValue((String) json, type);
+            }
+        } catch (Exception e) {
+            log.warn("读取排班号源缓存失败，回源数据库 - key: {}, 错误: {}", key, e.getMessage());
+        }
+        l2MissCount.incrementAndGet();
+
+        T value = loader.get();
+        if (version == null) {
+            return value;
+        }
+        try {
+            Long written = redisTemplate.execute(PUT_IF_VERSION_SCRIPT, Arrays.asList(key, key + VERSION_KEY_SUFFIX),
+                    version, field, objectMapper.writeValueAsString(value), String.valueOf(L2_TTL.toMillis()));
+            if (written == null || written == 0) {
+                l2StaleSkipCount.incrementAndGet();
+                log.debug("回源期间缓存已失效，放弃写回 - key: {}", key);
+            }
+        } catch (Exception e) {
+            log.warn("写入排班号源缓存失败 - key: {}, 错误: {}", key, e.getMessage());
+        }
+        return value;
+    }
+
+    /**
+     * 失效二级缓存：先递增版本使进行中的回源放弃写回，再删除缓存
+     */
+    private void invalidateRedis(String key) {
+        String versionKey = key + VERSION_KEY_SUFFIX;
+        redisTemplate.opsForValue().increment(versionKey);
+        redisTemplate.expire(versionKey, VERSION_TTL);
+        redisTemplate.delete(key);
+    }
+}
@@ -0,0 +1,22 @@
+package com.hospital.registration.common;
+
+import java.lang.annotation.*;
+
+/**
+ * @title: CurrentUser
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 当前登录用户注解，标注在Controller方法参数上
+ * 参数类型为UserPrincipal时注入完整身份，为Long时注入用户ID
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+
+    /**
+     * 是否必须登录，为false时未登录注入null
+     */
+    boolean required() default true;
+}
@@ -2,8 +2,10 @@ package com.hospital.registration.common;
 
 import lombok.Getter;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @title: DetailTimeSlot
@@ -11,77 +13,111 @@ import java.util.List;
  * @date: 2026/2/20
  * @version: 1.0
  * @description: 细分时段配置
+ * 细分时段表为不可变常量，全局共享；每个时段带有在所属大时段内的序号，便于按序号用数组计数。
  */
 @Getter
 public class DetailTimeSlot {
 
+    private static final List<DetailTimeSlot> MORNING_SLOTS = List.of(
+            new DetailTimeSlot("M_0800", "08:00-08:30", "MORNING", 1, 0),
+            new DetailTimeSlot("M_0830", "08:30-09:00", "MORNING", 2, 1),
+            new DetailTimeSlot("M_0900", "09:00-09:30", "MORNING", 3, 2),
+            new DetailTimeSlot("M_0930", "09:30-10:00", "MORNING", 4, 3),
+            new DetailTimeSlot("M_1000", "10:00-10:30", "MORNING", 5, 4),
+            new DetailTimeSlot("M_1030", "10:30-11:00", "MORNING", 6, 5),
+            new DetailTimeSlot("M_1100", "11:00-11:30", "MORNING", 7, 6),
+            new DetailTimeSlot("M_1130", "11:30-12:00", "MORNING", 8, 7));
+
+    private static final List<DetailTimeSlot> AFTERNOON_SLOTS = List.of(
+            new DetailTimeSlot("A_1400", "14:00-14:30", "AFTERNOON", 9, 0),
+            new DetailTimeSlot("A_1430", "14:30-15:00", "AFTERNOON", 10, 1),
+            new DetailTimeSlot("A_1500", "15:00-15:30", "AFTERNOON", 11, 2),
+            new DetailTimeSlot("A_1530", "15:30-16:00", "AFTERNOON", 12, 3),
+            new DetailTimeSlot("A_1600", "16:00-16:30", "AFTERNOON", 13, 4),
+            new DetailTimeSlot("A_1630", "16:30-17:00", "AFTERNOON", 14, 5),
+            new DetailTimeSlot("A_1700", "17:00-17:30", "AFTERNOON", 15, 6),
+            new DetailTimeSlot("A_1730", "17:30-18:00", "AFTERNOON", 16, 7));
+
+    private static final List<DetailTimeSlot> EVENING_SLOTS = List.of(
+            new DetailTimeSlot("E_1800", "18:00-18:30", "EVENING", 17, 0),
+            new DetailTimeSlot("E_1830", "18:30-19:00", "EVENING", 18, 1),
+            new DetailTimeSlot("E_1900", "19:00-19:30", "EVENING", 19, 2),
+            new DetailTimeSlot("E_1930", "19:30-20:00", "EVENING", 20, 3));
+
+    private static final Map<String, DetailTimeSlot> SLOTS_BY_CODE;
+
+    static {
+        Map<String, DetailTimeSlot> map = new HashMap<>();
+        for (List<DetailTimeSlot> slots : List.of(MORNING_SLOTS, AFTERNOON_SLOTS, EVENING_SLOTS)) {
+            for (DetailTimeSlot slot : slots) {
+                map.put(slot.getSlotCode(), slot);
+            }
+        }
+        SLOTS_BY_CODE = Collections.unmodifiableMap(map);
+    }
+
     private final String slotCode;
     private final String timeRange;
     private final String period;
     private final Integer sortOrder;
+    // 在所属大时段细分时段表中的下标
+    private final int ordinal;
 
-    public DetailTimeSlot(String slotCode, String timeRange, String period, Integer sortOrder) {
+    private DetailTimeSlot(String slotCode, String timeRange, String period, Integer sortOrder, int ordinal) {
         this.slotCode = slotCode;
         this.timeRange = timeRange;
         this.period = period;
         this.sortOrder = sortOrder;
+        this.ordinal = ordinal;
     }
 
     /**
-     * 获取上午的细分时段列表
+     * 获取上午的细分时段列表（不可变）
      */
     public static List<DetailTimeSlot> getMorningSlots() {
-        List<DetailTimeSlot> slots = new ArrayList<>();
-        slots.add(new DetailTimeSlot("M_0800", "08:00-08:30", "MORNING", 1));
-        slots.add(new DetailTimeSlot("M_0830", "08:30-09:00", "MORNING", 2));
-        slots.add(new DetailTimeSlot("M_0900", "09:00-09:30", "MORNING", 3));
-        slots.add(new DetailTimeSlot("M_0930", "09:30-10:00", "MORNING", 4));
-        slots.add(new DetailTimeSlot("M_1000", "10:00-10:30", "MORNING", 5));
-        slots.add(new DetailTimeSlot("M_1030", "10:30-11:00", "MORNING", 6));
-        slots.add(new DetailTimeSlot("M_1100", "11:00-11:30", "MORNING", 7));
-        slots.add(new DetailTimeSlot("M_1130", "11:30-12:00", "MORNING", 8));
-        return slots;
+        return MORNING_SLOTS;
     }
 
     /**
-     * 获取下午的细分时段列表
+     * 获取下午的细分时段列表（不可变）
      */
     public static List<DetailTimeSlot> getAfternoonSlots() {
-        List<DetailTimeSlot> slots = new ArrayList<>();
-        slots.add(new DetailTimeSlot("A_1400", "14:00-14:30", "AFTERNOON", 9));
-        slots.add(new DetailTimeSlot("A_1430", "14:30-15:00", "AFTERNOON", 10));
-        slots.add(new DetailTimeSlot("A_1500", "15:00-15:30", "AFTERNOON", 11));
-        slots.add(new DetailTimeSlot("A_1530", "15:30-16:00", "AFTERNOON", 12));
-        slots.add(new DetailTimeSlot("A_1600", "16:00-16:30", "AFTERNOON", 13));
-        slots.add(new DetailTimeSlot("A_1630", "16:30-17:00", "AFTERNOON", 14));
-        slots.add(new DetailTimeSlot("A_1700", "17:00-17:30", "AFTERNOON", 15));
-        slots.add(new DetailTimeSlot("A_1730", "17:30-18:00", "AFTERNOON", 16));
-        return slots;
+        return AFTERNOON_SLOTS;
     }
 
     /**
-     * 获取晚间的细分时段列表
+     * 获取晚间的细分时段列表（不可变）
      */
     public static List<DetailTimeSlot> getEveningSlots() {
-        List<DetailTimeSlot> slots = new ArrayList<>();
-        slots.add(new DetailTimeSlot("E_1800", "18:00-18:30", "EVENING", 17));
-        slots.add(new DetailTimeSlot("E_1830", "18:30-19:00", "EVENING", 18));
-        slots.add(new DetailTimeSlot("E_1900", "19:00-19:30", "EVENING", 19));
-        slots.add(new DetailTimeSlot("E_1930", "19:30-20:00", "EVENING", 20));
-        return slots;
+        return EVENING_SLOTS;
     }
 
     /**
-     * 根据大时段获取细分时段列表
+     * 根据大时段获取细分时段列表（不可变）
      */
     public static List<DetailTimeSlot> getSlotsByTimeSlot(TimeSlot timeSlot) {
         if (timeSlot == TimeSlot.MORNING) {
-            return getMorningSlots();
+            return MORNING_SLOTS;
         } else if (timeSlot == TimeSlot.AFTERNOON) {
-            return getAfternoonSlots();
+            return AFTERNOON_SLOTS;
         } else if (timeSlot == TimeSlot.EVENING) {
-            return getEveningSlots();
+            return EVENING_SLOTS;
         }
-        return new ArrayList<>();
+        return Collections.emptyList();
+    }
+
+    /**
+     * 根据时段编码获取细分时段，编码不存在时返回null
+     */
+    public static DetailTimeSlot of(String slotCode) {
+        return slotCode == null ? null : SLOTS_BY_CODE.get(slotCode);
+    }
+
+    /**
+     * 判断细分时段是否属于指定大时段
+     */
+    public static boolean belongsTo(TimeSlot timeSlot, String slotCode) {
+        DetailTimeSlot slot = of(slotCode);
+        return slot != null && timeSlot != null && slot.getPeriod().equals(timeSlot.getDbValue());
     }
 }
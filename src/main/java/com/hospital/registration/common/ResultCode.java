@@ -20,6 +20,8 @@ public enum ResultCode {
     UNAUTHORIZED(401, "未授权"),
     FORBIDDEN(403, "禁止访问"),
     NOT_FOUND(404, "资源不存在"),
+    REQUEST_PROCESSING(409, "请求处理中"),
+    TOO_MANY_REQUESTS(429, "请求过于频繁"),
 
     // 用户相关 1xxx
     USER_NOT_EXIST(1001, "用户不存在"),
@@ -0,0 +1,64 @@
+package com.hospital.registration.common;
+
+import com.hospital.registration.cache.PermissionRequirementIndex;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @title: UserPrincipal
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 当前请求的登录身份（不可变），由AuthenticationFilter每个请求解析一次
+ */
+@Getter
+@AllArgsConstructor
+public class UserPrincipal {
+
+    // request属性名
+    public static final String ATTRIBUTE = UserPrincipal.class.getName();
+
+    // 用户ID
+    private final Long userId;
+
+    // 用户名
+    private final String username;
+
+    // 是否管理端登录
+    private final boolean adminSession;
+
+    // 是否超级管理员
+    private final boolean superAdmin;
+
+    // 角色编码列表（不可变）
+    private final List<String> roleCodes;
+
+    // 权限编码集合（不可变）
+    private final Set<String> permissionCodes;
+
+    // 权限位图（按PermissionRequirementIndex序号，只读）
+    private final long[] permissionBits;
+
+    // 数据权限：绑定的医生ID（非医生为null）
+    private final Long doctorId;
+
+    // 数据权限：医生所属科室ID（非医生为null）
+    private final Long departmentId;
+
+    /**
+     * 是否拥有指定权限（超级管理员拥有全部权限）
+     */
+    public boolean hasPermission(String permissionCode) {
+        return superAdmin || permissionCodes.contains(permissionCode);
+    }
+
+    /**
+     * 是否拥有指定序号的权限（超级管理员拥有全部权限）
+     */
+    public boolean hasPermission(int ordinal) {
+        return superAdmin || PermissionRequirementIndex.test(permissionBits, ordinal);
+    }
+}
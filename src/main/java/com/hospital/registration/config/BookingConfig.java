@@ -0,0 +1,36 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @title: BookingConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 异步挂号配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.booking")
+public class BookingConfig {
+
+    // 是否开启异步挂号（开启后创建挂号立即返回挂号凭证，由消费者批量落库）
+    private Boolean asyncEnabled = false;
+
+    // 消费者每批处理的消息数
+    private Integer batchSize = 20;
+
+    // 并发消费者数量
+    private Integer concurrency = 4;
+
+    // 挂号凭证保留时间(分钟)
+    private Integer ticketTtlMinutes = 30;
+
+    // 数据库瞬时异常（锁等待超时、死锁、连接失败）的最大重试次数，超过后凭证标记为失败
+    private Integer maxRetries = 3;
+
+    // 重试延迟(毫秒)，消息在重试队列中到期后回到挂号队列
+    private Long retryDelayMillis = 2000L;
+}
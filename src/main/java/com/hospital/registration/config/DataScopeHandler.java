@@ -0,0 +1,141 @@
+package com.hospital.registration.config;
+
+import com.baomidou.mybatisplus.extension.plugins.handler.MultiDataPermissionHandler;
+import com.hospital.registration.annotation.DataScope;
+import com.hospital.registration.common.UserPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * @title: DataScopeHandler
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 数据权限处理器
+ * 对标注了@DataScope的Mapper方法，按请求中已解析的UserPrincipal（医生ID/科室ID随权限缓存加载）
+ * 把范围条件直接拼入SQL，一条查询完成过滤，不再在Service中先判断身份、再查医生、再选查询。
+ * 没有登录身份时不返回数据（fail closed）；定时任务、消息消费等确需全量数据的调用须通过runAsSystem显式声明。
+ */
+@Slf4j
+@Component
+public class DataScopeHandler implements MultiDataPermissionHandler {
+
+    // MappedStatement ID -> 数据权限注解（无注解为empty）
+    private final Map<String, Optional<DataScope>> scopeCache = new ConcurrentHashMap<>();
+
+    // 系统上下文标记（非HTTP调用显式声明不做数据权限过滤）
+    private static final ThreadLocal<Boolean> SYSTEM_CONTEXT = new ThreadLocal<>();
+
+    /**
+     * 以系统身份执行（不做数据权限过滤），仅供定时任务、消息消费等内部调用
+     */
+    public static <T> T runAsSystem(Supplier<T> action) {
+        Boolean previous = SYSTEM_CONTEXT.get();
+        SYSTEM_CONTEXT.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                SYSTEM_CONTEXT.remove();
+            } else {
+                SYSTEM_CONTEXT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 语句是否声明了数据权限（未声明的语句不做SQL解析）
+     */
+    public boolean isScoped(String mappedStatementId) {
+        return scopeCache.computeIfAbsent(mappedStatementId, this::resolveDataScope).isPresent();
+    }
+
+    @Override
+    public Expression getSqlSegment(Table table, Expression where, String mappedStatementId) {
+        Optional<DataScope> dataScope = scopeCache.computeIfAbsent(mappedStatementId, this::resolveDataScope);
+        if (dataScope.isEmpty() || !matchesTable(table, dataScope.get().table())) {
+            return null;
+        }
+        if (Boolean.TRUE.equals(SYSTEM_CONTEXT.get())) {
+            return null;
+        }
+        UserPrincipal principal = currentPrincipal();
+        if (principal == null) {
+            // 没有登录身份也没有声明系统上下文：无数据
+            log.warn("无登录身份访问数据权限语句，已拒绝 - 语句: {}", mappedStatementId);
+            return denyAll();
+        }
+        if (principal.isSuperAdmin()) {
+            return null;
+        }
+
+        DataScope scope = dataScope.get();
+        Table target = table.getAlias() != null ? new Table(table.getAlias().getName()) : table;
+        if (!scope.doctorColumn().isEmpty() && principal.getDoctorId() != null) {
+            return new EqualsTo(new Column(target, scope.doctorColumn()), new LongValue(principal.getDoctorId()));
+        }
+        if (!scope.departmentColumn().isEmpty() && principal.getDepartmentId() != null) {
+            return new EqualsTo(new Column(target, scope.departmentColumn()), new LongValue(principal.getDepartmentId()));
+        }
+        // 既不是超级管理员也没有绑定医生：无数据
+        log.debug("无数据权限 - 用户ID: {}, 语句: {}", principal.getUserId(), mappedStatementId);
+        return denyAll();
+    }
+
+    /**
+     * 恒假条件 1 = 0
+     */
+    private Expression denyAll() {
+        return new EqualsTo(new LongValue(1), new LongValue(0));
+    }
+
+    /**
+     * 当前请求的登录身份
+     */
+    private UserPrincipal currentPrincipal() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (UserPrincipal) attributes.getAttribute(UserPrincipal.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * 根据MappedStatement ID找到Mapper方法上的@DataScope
+     */
+    private Optional<DataScope> resolveDataScope(String mappedStatementId) {
+        int index = mappedStatementId.lastIndexOf('.');
+        if (index < 0) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> mapperClass = Class.forName(mappedStatementId.substring(0, index));
+            String methodName = mappedStatementId.substring(index + 1);
+            for (Method method : mapperClass.getMethods()) {
+                if (method.getName().equals(methodName) && method.isAnnotationPresent(DataScope.class)) {
+                    return Optional.of(method.getAnnotation(DataScope.class));
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            log.debug("未找到Mapper类 - 语句: {}", mappedStatementId);
+        }
+        return Optional.empty();
+    }
+
+    private boolean matchesTable(Table table, String tableName) {
+        return tableName.equalsIgnoreCase(table.getName().replace("`", ""));
+    }
+}
@@ -0,0 +1,57 @@
+package com.hospital.registration.config;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.DataPermissionInterceptor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * @title: DataScopeInterceptor
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 数据权限拦截器
+ * 只对标注了@DataScope的语句做SQL解析和条件拼接，其余语句直接放行，避免每条SQL都经过JSqlParser
+ */
+public class DataScopeInterceptor extends DataPermissionInterceptor {
+
+    private final DataScopeHandler dataScopeHandler;
+
+    public DataScopeInterceptor(DataScopeHandler dataScopeHandler) {
+        super(dataScopeHandler);
+        this.dataScopeHandler = dataScopeHandler;
+    }
+
+    /**
+     * 在分页插件生成count语句之前改写SQL，保证count与分页查询使用同样的过滤条件
+     */
+    @Override
+    public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                               ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        if (dataScopeHandler.isScoped(ms.getId())) {
+            super.beforeQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+        return true;
+    }
+
+    @Override
+    public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                            ResultHandler resultHandler, BoundSql boundSql) {
+        // 已在willDoQuery中处理
+    }
+
+    @Override
+    public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+        MappedStatement ms = PluginUtils.mpStatementHandler(sh).mappedStatement();
+        if (dataScopeHandler.isScoped(ms.getId())) {
+            super.beforePrepare(sh, connection, transactionTimeout);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @title: IdGeneratorConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 分布式ID生成配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.id")
+public class IdGeneratorConfig {
+
+    // 机器ID(0-1023)，多节点部署时每个节点必须不同；不配置时根据本机地址推算
+    private Integer workerId;
+}
@@ -0,0 +1,27 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @title: LoginConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 登录配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.login")
+public class LoginConfig {
+
+    // BCrypt目标强度(4-31)，新密码按此强度加密
+    private Integer bcryptStrength = 10;
+
+    // 登录成功时若密码哈希强度低于目标强度，是否后台重新加密
+    private Boolean rehashOnLogin = true;
+
+    // 登录辅助线程数（预取角色权限、重新加密密码）
+    private Integer workerThreads = 8;
+}
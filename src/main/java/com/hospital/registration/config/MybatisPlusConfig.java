@@ -18,12 +18,15 @@ public class MybatisPlusConfig {
 
     /**
      * 配置MyBatis-Plus拦截器
-     * 添加分页插件
+     * 添加数据权限插件、分页插件（数据权限需在分页之前）
      */
     @Bean
-    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+    public MybatisPlusInterceptor mybatisPlusInterceptor(DataScopeHandler dataScopeHandler) {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
 
+        // 添加数据权限插件
+        interceptor.addInnerInterceptor(new DataScopeInterceptor(dataScopeHandler));
+
         // 添加分页插件
         PaginationInnerInterceptor paginationInterceptor = new PaginationInnerInterceptor(DbType.MYSQL);
 
@@ -0,0 +1,33 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @title: OutboxConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱中继配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.outbox")
+public class OutboxConfig {
+
+    // 每批投递的消息数
+    private Integer batchSize = 100;
+
+    // 轮询间隔(毫秒)，事务提交后会立即唤醒中继，轮询只用于兜底
+    private Long pollIntervalMillis = 1000L;
+
+    // 等待发布确认的超时时间(秒)
+    private Integer confirmTimeoutSeconds = 10;
+
+    // 已发送消息保留天数
+    private Integer retentionDays = 7;
+
+    // 已发送消息清理时间
+    private String cleanupCron = "0 0 4 * * ?";
+}
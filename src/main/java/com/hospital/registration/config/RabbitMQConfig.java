@@ -2,12 +2,16 @@ package com.hospital.registration.config;
 
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @title: RabbitMQConfig
  * @author: Su
@@ -32,6 +36,34 @@ public class RabbitMQConfig {
     // 死信路由键
     public static final String REFUND_DLX_ROUTING_KEY = "hospital.refund.dlx";
 
+    // 退款重试交换机
+    public static final String REFUND_RETRY_EXCHANGE = "hospital.refund.retry.exchange";
+    // 退款重试队列前缀（后接重试级别）
+    public static final String REFUND_RETRY_QUEUE_PREFIX = "hospital.refund.retry.queue.";
+    // 退款重试路由键前缀（后接重试级别）
+    public static final String REFUND_RETRY_ROUTING_KEY_PREFIX = "hospital.refund.retry.";
+    // 退款已重试次数消息头
+    public static final String REFUND_ATTEMPT_HEADER = "x-refund-attempt";
+    // 渠道已退款标记消息头（重试时只重试落库）
+    public static final String REFUND_GATEWAY_DONE_HEADER = "x-refund-gateway-done";
+
+    // 挂号队列
+    public static final String BOOKING_QUEUE = "hospital.booking.queue";
+    // 挂号交换机
+    public static final String BOOKING_EXCHANGE = "hospital.booking.exchange";
+    // 挂号路由键
+    public static final String BOOKING_ROUTING_KEY = "hospital.booking";
+    // 挂号重试队列
+    public static final String BOOKING_RETRY_QUEUE = "hospital.booking.retry.queue";
+    // 挂号重试路由键
+    public static final String BOOKING_RETRY_ROUTING_KEY = "hospital.booking.retry";
+    // 挂号死信队列（无法处理的消息留待人工处理）
+    public static final String BOOKING_DLQ = "hospital.booking.dlq";
+    // 挂号死信路由键
+    public static final String BOOKING_DLQ_ROUTING_KEY = "hospital.booking.dlq";
+    // 挂号处理失败原因消息头
+    public static final String BOOKING_ERROR_HEADER = "x-booking-error";
+
     /**
      * 退款队列
      */
@@ -90,6 +122,154 @@ public class RabbitMQConfig {
                 .with(REFUND_DLX_ROUTING_KEY);
     }
 
+    /**
+     * 退款重试交换机
+     */
+    @Bean
+    public DirectExchange refundRetryExchange() {
+        return new DirectExchange(REFUND_RETRY_EXCHANGE, true, false);
+    }
+
+    /**
+     * 退款分级重试队列
+     * 每级队列设置固定TTL且无消费者，消息到期后经死信回到退款队列，延迟按级别指数增长
+     */
+    @Bean
+    public Declarables refundRetryQueues(RefundConfig refundConfig) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (int tier = 1; tier <= refundConfig.getMaxRetries(); tier++) {
+            Queue queue = QueueBuilder.durable(refundRetryQueue(tier))
+                    .ttl((int) refundConfig.getRetryDelayMillis(tier))
+                    .deadLetterExchange(REFUND_EXCHANGE)
+                    .deadLetterRoutingKey(REFUND_ROUTING_KEY)
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(refundRetryExchange())
+                    .with(refundRetryRoutingKey(tier)));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * 第tier级退款重试队列名
+     */
+    public static String refundRetryQueue(int tier) {
+        return REFUND_RETRY_QUEUE_PREFIX + tier;
+    }
+
+    /**
+     * 第tier级退款重试路由键
+     */
+    public static String refundRetryRoutingKey(int tier) {
+        return REFUND_RETRY_ROUTING_KEY_PREFIX + tier;
+    }
+
+    /**
+     * 挂号队列
+     */
+    @Bean
+    public Queue bookingQueue() {
+        return QueueBuilder.durable(BOOKING_QUEUE).build();
+    }
+
+    /**
+     * 挂号交换机
+     */
+    @Bean
+    public DirectExchange bookingExchange() {
+        return new DirectExchange(BOOKING_EXCHANGE, true, false);
+    }
+
+    /**
+     * 绑定挂号队列到交换机
+     */
+    @Bean
+    public Binding bookingBinding() {
+        return BindingBuilder.bind(bookingQueue())
+                .to(bookingExchange())
+                .with(BOOKING_ROUTING_KEY);
+    }
+
+    /**
+     * 挂号重试队列
+     * 设置固定TTL且无消费者，消息到期后经死信回到挂号队列
+     */
+    @Bean
+    public Queue bookingRetryQueue(BookingConfig bookingConfig) {
+        return QueueBuilder.durable(BOOKING_RETRY_QUEUE)
+                .ttl(bookingConfig.getRetryDelayMillis().intValue())
+                .deadLetterExchange(BOOKING_EXCHANGE)
+                .deadLetterRoutingKey(BOOKING_ROUTING_KEY)
+                .build();
+    }
+
+    /**
+     * 绑定挂号重试队列到挂号交换机
+     */
+    @Bean
+    public Binding bookingRetryBinding(BookingConfig bookingConfig) {
+        return BindingBuilder.bind(bookingRetryQueue(bookingConfig))
+                .to(bookingExchange())
+                .with(BOOKING_RETRY_ROUTING_KEY);
+    }
+
+    /**
+     * 挂号死信队列
+     */
+    @Bean
+    public Queue bookingDeadLetterQueue() {
+        return QueueBuilder.durable(BOOKING_DLQ).build();
+    }
+
+    /**
+     * 绑定挂号死信队列到挂号交换机
+     */
+    @Bean
+    public Binding bookingDeadLetterBinding() {
+        return BindingBuilder.bind(bookingDeadLetterQueue())
+                .to(bookingExchange())
+                .with(BOOKING_DLQ_ROUTING_KEY);
+    }
+
+    /**
+     * 挂号消费者容器工厂(批量消费，手动确认)
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory bookingListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                                BookingConfig bookingConfig) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(bookingConfig.getBatchSize());
+        factory.setPrefetchCount(bookingConfig.getBatchSize() * 2);
+        factory.setConcurrentConsumers(bookingConfig.getConcurrency());
+        factory.setMaxConcurrentConsumers(bookingConfig.getConcurrency());
+        return factory;
+    }
+
+    /**
+     * 退款消费者容器工厂(手动确认)
+     * 监听方法返回CompletableFuture，渠道调用完成后由容器确认，消费者线程不等待渠道响应；
+     * 重试由消费者投递到分级延迟队列完成，意外异常时拒绝消息进入死信队列，不重新入队
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory refundListenerContainerFactory(ConnectionFactory connectionFactory,
+                                                                               RefundConfig refundConfig) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(refundConfig.getPrefetch());
+        factory.setConcurrentConsumers(refundConfig.getConcurrency());
+        factory.setMaxConcurrentConsumers(refundConfig.getConcurrency());
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
     /**
      * 配置消息转换器(使用JSON格式)
      */
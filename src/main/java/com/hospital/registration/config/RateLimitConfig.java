@@ -0,0 +1,42 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @title: RateLimitConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 患者端限流配置（令牌桶：容量为允许的突发请求数，速率为每秒补充的令牌数）
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.rate-limit")
+public class RateLimitConfig {
+
+    // 是否开启限流
+    private Boolean enabled = true;
+
+    // 单个用户：桶容量、每秒补充令牌数
+    private Integer userCapacity = 10;
+    private Double userRate = 2.0;
+
+    // 单个IP：桶容量、每秒补充令牌数
+    private Integer ipCapacity = 60;
+    private Double ipRate = 20.0;
+
+    // 单个排班挂号：桶容量、每秒补充令牌数
+    private Integer scheduleCapacity = 50;
+    private Double scheduleRate = 20.0;
+
+    // 热门排班超出限流时是否转入排队（异步挂号）而不是直接拒绝
+    private Boolean waitingRoomEnabled = false;
+
+    // 受信任的反向代理IP，只有请求直接来自这些地址时才读取X-Forwarded-For/X-Real-IP，否则按连接地址限流
+    private List<String> trustedProxies = new ArrayList<>();
+}
@@ -0,0 +1,100 @@
+package com.hospital.registration.config;
+
+import com.hospital.registration.cache.RbacSnapshot;
+import com.hospital.registration.service.impl.TokenServiceImpl;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @title: RedisConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: Redis配置类（发布订阅监听）
+ * 监听容器不随上下文启动，应用就绪后在后台订阅，Redis不可用时按指数退避重试，不影响应用启动。
+ */
+@Slf4j
+@Configuration
+public class RedisConfig {
+
+    // 订阅重试初始间隔与最大间隔(毫秒)
+    private static final long SUBSCRIBE_INITIAL_DELAY_MILLIS = 1000L;
+    private static final long SUBSCRIBE_MAX_DELAY_MILLIS = 60_000L;
+
+    private final ScheduledExecutorService subscribeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "redis-listener-starter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Redis消息监听容器：订阅Token吊销通知，失效本节点的Token近缓存；订阅RBAC变更通知，重新加载本节点快照
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       TokenServiceImpl tokenService,
+                                                                       RbacSnapshot rbacSnapshot) {
+        // 不随上下文自动启动，由startListenerContainer在应用就绪后启动；订阅建立后连接断开时由容器自行按退避重连
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return false;
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(tokenService, new ChannelTopic(TokenServiceImpl.REVOKE_CHANNEL));
+        container.addMessageListener(rbacSnapshot, new ChannelTopic(RbacSnapshot.CHANGE_CHANNEL));
+        ExponentialBackOff backOff = new ExponentialBackOff(SUBSCRIBE_INITIAL_DELAY_MILLIS, 2);
+        backOff.setMaxInterval(SUBSCRIBE_MAX_DELAY_MILLIS);
+        container.setRecoveryBackoff(backOff);
+        return container;
+    }
+
+    /**
+     * 应用就绪后在后台启动监听容器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListenerContainer(ApplicationReadyEvent event) {
+        RedisMessageListenerContainer container = event.getApplicationContext().getBean(RedisMessageListenerContainer.class);
+        subscribeExecutor.execute(() -> tryStart(container, SUBSCRIBE_INITIAL_DELAY_MILLIS));
+    }
+
+    /**
+     * 启动监听容器，失败时停止容器并按指数退避再次尝试
+     */
+    private void tryStart(RedisMessageListenerContainer container, long delayMillis) {
+        try {
+            container.start();
+            log.info("Redis消息监听容器已启动");
+        } catch (Exception e) {
+            log.warn("Redis消息监听容器启动失败，{}ms后重试 - 错误: {}", delayMillis, e.getMessage());
+            try {
+                container.stop();
+            } catch (Exception stopError) {
+                log.debug("停止Redis消息监听容器失败 - 错误: {}", stopError.getMessage());
+            }
+            long nextDelay = Math.min(delayMillis * 2, SUBSCRIBE_MAX_DELAY_MILLIS);
+            subscribeExecutor.schedule(() -> tryStart(container, nextDelay), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 关闭订阅重试线程
+     */
+    @PreDestroy
+    public void shutdownSubscribeExecutor() {
+        subscribeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,53 @@
+package com.hospital.registration.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @title: RefundConfig
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 退款消费配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hospital.refund")
+public class RefundConfig {
+
+    // 并发消费者数量
+    private Integer concurrency = 4;
+
+    // 每个消费者预取（同时处理中）的消息数
+    private Integer prefetch = 20;
+
+    // 退款结果落库线程数
+    private Integer workerThreads = 4;
+
+    // 支付渠道退款接口超时时间(秒)
+    private Integer gatewayTimeoutSeconds = 10;
+
+    // 模拟支付渠道退款耗时(毫秒)
+    private Long stubLatencyMillis = 2000L;
+
+    // 最大重试次数（每次重试对应一级延迟队列）
+    private Integer maxRetries = 3;
+
+    // 首次重试延迟(毫秒)
+    private Long retryInitialDelayMillis = 5000L;
+
+    // 重试延迟倍数
+    private Integer retryMultiplier = 4;
+
+    /**
+     * 第tier级重试的延迟时间：首次延迟 × 倍数^(tier-1)
+     */
+    public long getRetryDelayMillis(int tier) {
+        long delay = retryInitialDelayMillis;
+        for (int i = 1; i < tier; i++) {
+            delay *= retryMultiplier;
+        }
+        return delay;
+    }
+}
@@ -1,12 +1,17 @@
 package com.hospital.registration.config;
 
 import com.hospital.registration.interceptor.AppAuthInterceptor;
+import com.hospital.registration.interceptor.CurrentUserArgumentResolver;
 import com.hospital.registration.interceptor.PermissionInterceptor;
+import com.hospital.registration.interceptor.RateLimitInterceptor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * @title: WebMvcConfig
  * @author: Su
@@ -19,13 +24,27 @@ public class WebMvcConfig implements WebMvcConfigurer {
 
     private final PermissionInterceptor permissionInterceptor;
     private final AppAuthInterceptor appAuthInterceptor;
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final CurrentUserArgumentResolver currentUserArgumentResolver;
 
     /**
      * 构造器注入
      */
-    public WebMvcConfig(PermissionInterceptor permissionInterceptor, AppAuthInterceptor appAuthInterceptor) {
+    public WebMvcConfig(PermissionInterceptor permissionInterceptor, AppAuthInterceptor appAuthInterceptor,
+                        RateLimitInterceptor rateLimitInterceptor,
+                        CurrentUserArgumentResolver currentUserArgumentResolver) {
         this.permissionInterceptor = permissionInterceptor;
         this.appAuthInterceptor = appAuthInterceptor;
+        this.rateLimitInterceptor = rateLimitInterceptor;
+        this.currentUserArgumentResolver = currentUserArgumentResolver;
+    }
+
+    /**
+     * 添加参数解析器（@CurrentUser）
+     */
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);
     }
 
     /**
@@ -55,6 +74,9 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/app/schedule/**",      // 排班列表无需登录
                         "/app/announcement/**"  // 公告列表无需登录
                 );
+        // 患者端限流拦截器（在认证之后，可按用户限流）
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/app/registration/create", "/app/schedule/**");
 
     }
 
@@ -140,7 +140,7 @@ public class MedicalRecordController {
     public Result getTodayPatients(HttpServletRequest request) {
         Long userId = (Long) request.getAttribute("userId");
         log.info("获取医生今日待诊列表 - 用户ID: {}", userId);
-        List<RegistrationVO> registrations = medicalRecordService.getDoctorTodayPatients(userId);
+        List<RegistrationVO> registrations = medicalRecordService.getDoctorTodayPatients();
         return Result.ok().data("registrations", registrations);
     }
 
@@ -175,7 +175,7 @@ public class MedicalRecordController {
     public Result getHistoryPage(@RequestBody MedicalRecordQueryDTO queryDTO, HttpServletRequest request) {
         Long userId = (Long) request.getAttribute("userId");
         log.info("分页查询医生历史病历 - 用户ID: {}", userId);
-        Page<MedicalRecordVO> page = medicalRecordService.getDoctorHistoryPage(queryDTO, userId);
+        Page<MedicalRecordVO> page = medicalRecordService.getDoctorHistoryPage(queryDTO);
         return Result.ok().data("page", page);
     }
 
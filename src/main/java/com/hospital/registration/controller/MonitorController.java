@@ -0,0 +1,127 @@
+package com.hospital.registration.controller;
+
+import com.hospital.registration.cache.PermissionCache;
+import com.hospital.registration.cache.RbacSnapshot;
+import com.hospital.registration.cache.ScheduleAvailabilityCache;
+import com.hospital.registration.common.RequirePermission;
+import com.hospital.registration.common.Result;
+import com.hospital.registration.mq.OutboxRelay;
+import com.hospital.registration.mq.RefundMessageConsumer;
+import com.hospital.registration.service.PaymentService;
+import com.hospital.registration.service.RateLimitService;
+import com.hospital.registration.service.TokenService;
+import com.hospital.registration.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @title: MonitorController
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 系统监控控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    private final ScheduleAvailabilityCache scheduleAvailabilityCache;
+    private final PermissionCache permissionCache;
+    private final RbacSnapshot rbacSnapshot;
+    private final RateLimitService rateLimitService;
+    private final TokenService tokenService;
+    private final UserService userService;
+    private final RefundMessageConsumer refundMessageConsumer;
+    private final OutboxRelay outboxRelay;
+    private final PaymentService paymentService;
+
+    /**
+     * 构造器注入
+     */
+    public MonitorController(ScheduleAvailabilityCache scheduleAvailabilityCache,
+                             PermissionCache permissionCache,
+                             RbacSnapshot rbacSnapshot,
+                             RateLimitService rateLimitService,
+                             TokenService tokenService,
+                             UserService userService,
+                             RefundMessageConsumer refundMessageConsumer,
+                             OutboxRelay outboxRelay,
+                             PaymentService paymentService) {
+        this.scheduleAvailabilityCache = scheduleAvailabilityCache;
+        this.permissionCache = permissionCache;
+        this.rbacSnapshot = rbacSnapshot;
+        this.rateLimitService = rateLimitService;
+        this.tokenService = tokenService;
+        this.userService = userService;
+        this.refundMessageConsumer = refundMessageConsumer;
+        this.outboxRelay = outboxRelay;
+        this.paymentService = paymentService;
+    }
+
+    /**
+     * 获取缓存命中统计
+     */
+    @GetMapping("/cache")
+    @RequirePermission("system:monitor")
+    public Result getCacheStats() {
+        log.info("获取缓存命中统计");
+        return Result.ok()
+                .data("scheduleAvailability", scheduleAvailabilityCache.getStats())
+                .data("permission", permissionCache.getStats())
+                .data("rbac", rbacSnapshot.getStats())
+                .data("tokenSession", tokenService.getStats());
+    }
+
+    /**
+     * 获取患者端限流放行/拒绝统计
+     */
+    @GetMapping("/rate-limit")
+    @RequirePermission("system:monitor")
+    public Result getRateLimitStats() {
+        log.info("获取限流统计");
+        return Result.ok().data("rateLimit", rateLimitService.getStats());
+    }
+
+    /**
+     * 获取登录吞吐及各阶段耗时统计
+     */
+    @GetMapping("/login")
+    @RequirePermission("system:monitor")
+    public Result getLoginStats() {
+        log.info("获取登录统计");
+        return Result.ok().data("login", userService.getLoginStats());
+    }
+
+    /**
+     * 获取退款消费吞吐统计
+     */
+    @GetMapping("/refund")
+    @RequirePermission("system:monitor")
+    public Result getRefundStats() {
+        log.info("获取退款消费统计");
+        return Result.ok().data("refund", refundMessageConsumer.getStats());
+    }
+
+    /**
+     * 获取消息发件箱投递统计
+     */
+    @GetMapping("/outbox")
+    @RequirePermission("system:monitor")
+    public Result getOutboxStats() {
+        log.info("获取发件箱统计");
+        return Result.ok().data("outbox", outboxRelay.getStats());
+    }
+
+    /**
+     * 获取支付回调统计
+     */
+    @GetMapping("/payment-callback")
+    @RequirePermission("system:monitor")
+    public Result getPaymentCallbackStats() {
+        log.info("获取支付回调统计");
+        return Result.ok().data("paymentCallback", paymentService.getCallbackStats());
+    }
+}
@@ -1,6 +1,7 @@
 package com.hospital.registration.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.annotation.Idempotent;
 import com.hospital.registration.annotation.OperationLog;
 import com.hospital.registration.common.Constants;
 import com.hospital.registration.common.Result;
@@ -51,6 +52,7 @@ public class PaymentController {
      * 支付回调（模拟）
      */
     @PostMapping("/callback/{transactionNo}")
+    @Idempotent(scope = "payment:callback", keyParam = "transactionNo")
     @OperationLog(module = "支付管理", operation = "UPDATE")
         public Result paymentCallback(@PathVariable String transactionNo) {
         log.info("支付回调 - 交易流水号: {}", transactionNo);
@@ -1,12 +1,20 @@
 package com.hospital.registration.controller.app;
 
+import com.hospital.registration.annotation.Idempotent;
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.CurrentUser;
 import com.hospital.registration.common.Result;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.config.BookingConfig;
+import com.hospital.registration.config.RateLimitConfig;
 import com.hospital.registration.dto.RegistrationDTO;
+import com.hospital.registration.service.BookingService;
 import com.hospital.registration.service.PaymentService;
+import com.hospital.registration.service.RateLimitService;
 import com.hospital.registration.service.RegistrationService;
 import com.hospital.registration.vo.PaymentVO;
 import com.hospital.registration.vo.RegistrationVO;
-import jakarta.servlet.http.HttpServletRequest;
+import com.hospital.registration.vo.app.BookingTicketVO;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -27,34 +35,66 @@ public class AppRegistrationController {
 
     private final RegistrationService registrationService;
     private final PaymentService paymentService;
+    private final BookingService bookingService;
+    private final BookingConfig bookingConfig;
+    private final RateLimitService rateLimitService;
+    private final RateLimitConfig rateLimitConfig;
 
     /**
      * 构造器注入
      */
-    public AppRegistrationController(RegistrationService registrationService, PaymentService paymentService) {
+    public AppRegistrationController(RegistrationService registrationService,
+                                     PaymentService paymentService,
+                                     BookingService bookingService,
+                                     BookingConfig bookingConfig,
+                                     RateLimitService rateLimitService,
+                                     RateLimitConfig rateLimitConfig) {
         this.registrationService = registrationService;
         this.paymentService = paymentService;
+        this.bookingService = bookingService;
+        this.bookingConfig = bookingConfig;
+        this.rateLimitService = rateLimitService;
+        this.rateLimitConfig = rateLimitConfig;
     }
 
     /**
      * 创建挂号
      */
     @PostMapping("/create")
-    public Result create(@Valid @RequestBody RegistrationDTO registrationDTO, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    @Idempotent(scope = "registration:create")
+    public Result create(@Valid @RequestBody RegistrationDTO registrationDTO, @CurrentUser Long userId) {
         log.info("患者端创建挂号 - 用户ID: {}, 排班ID: {}", userId, registrationDTO.getScheduleId());
         // 设置患者ID为当前登录用户
         registrationDTO.setPatientId(userId);
+        // 排班限流：热门排班超出额度时转入排队或直接拒绝，不占用数据库连接
+        boolean admitted = rateLimitService.tryAcquireSchedule(registrationDTO.getScheduleId());
+        boolean waitingRoom = !admitted && Boolean.TRUE.equals(rateLimitConfig.getWaitingRoomEnabled());
+        if (!admitted && !waitingRoom) {
+            throw new BusinessException(ResultCode.TOO_MANY_REQUESTS.getCode(), "当前挂号人数较多，请稍后再试");
+        }
+        // 异步模式（或排队）：号源准入后立即返回挂号凭证，客户端轮询凭证获取结果
+        if (waitingRoom || Boolean.TRUE.equals(bookingConfig.getAsyncEnabled())) {
+            BookingTicketVO ticketVO = bookingService.submitBooking(registrationDTO);
+            return Result.ok("挂号已受理，请稍后查询结果").data("ticket", ticketVO);
+        }
         RegistrationVO registrationVO = registrationService.createRegistration(registrationDTO);
         return Result.ok("挂号成功").data("registration", registrationVO);
     }
 
+    /**
+     * 查询挂号凭证处理结果
+     */
+    @GetMapping("/ticket/{ticketNo}")
+    public Result ticket(@PathVariable String ticketNo, @CurrentUser Long userId) {
+        BookingTicketVO ticketVO = bookingService.getTicket(ticketNo, userId);
+        return Result.ok().data("ticket", ticketVO);
+    }
+
     /**
      * 我的挂号列表
      */
     @GetMapping("/my-list")
-    public Result myList(HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    public Result myList(@CurrentUser Long userId) {
         log.info("患者端获取我的挂号列表 - 用户ID: {}", userId);
         List<RegistrationVO> registrations = registrationService.getPatientRegistrations(userId);
         return Result.ok().data("registrations", registrations);
@@ -64,8 +104,7 @@ public class AppRegistrationController {
      * 挂号详情
      */
     @GetMapping("/{id}")
-    public Result detail(@PathVariable Long id, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    public Result detail(@PathVariable Long id, @CurrentUser Long userId) {
         log.info("患者端获取挂号详情 - ID: {}, 用户ID: {}", id, userId);
         RegistrationVO registrationVO = registrationService.getRegistrationById(id);
         // 验证是否是当前用户的挂号
@@ -79,8 +118,8 @@ public class AppRegistrationController {
      * 取消挂号
      */
     @PostMapping("/cancel/{id}")
-    public Result cancel(@PathVariable Long id, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    @Idempotent(scope = "registration:cancel", keyParam = "id")
+    public Result cancel(@PathVariable Long id, @CurrentUser Long userId) {
         log.info("患者端取消挂号 - ID: {}, 用户ID: {}", id, userId);
         // 先验证是否是当前用户的挂号
         RegistrationVO registrationVO = registrationService.getRegistrationById(id);
@@ -95,8 +134,8 @@ public class AppRegistrationController {
      * 支付挂号费（模拟支付）
      */
     @PostMapping("/pay/{id}")
-    public Result pay(@PathVariable Long id, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    @Idempotent(scope = "registration:pay", keyParam = "id")
+    public Result pay(@PathVariable Long id, @CurrentUser Long userId) {
         log.info("患者端支付挂号费 - 挂号ID: {}, 用户ID: {}", id, userId);
 
         // 验证是否是当前用户的挂号
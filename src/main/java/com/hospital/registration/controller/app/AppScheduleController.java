@@ -1,10 +1,10 @@
 package com.hospital.registration.controller.app;
 
+import com.hospital.registration.common.CurrentUser;
 import com.hospital.registration.common.Result;
 import com.hospital.registration.service.ScheduleService;
 import com.hospital.registration.vo.ScheduleVO;
 import com.hospital.registration.vo.app.DetailTimeSlotVO;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
@@ -57,16 +57,9 @@ public class AppScheduleController {
      * 获取排班的细分时段列表
      */
     @GetMapping("/{id}/detail-slots")
-    public Result getDetailSlots(@PathVariable Long id, HttpServletRequest request) {
+    public Result getDetailSlots(@PathVariable Long id, @CurrentUser(required = false) Long userId) {
         log.info("患者端获取排班细分时段 - 排班ID: {}", id);
 
-        Long userId = null;
-        try {
-            userId = (Long) request.getAttribute("userId");
-        } catch (Exception e) {
-            // 未登录
-        }
-
         List<DetailTimeSlotVO> detailSlots = scheduleService.getDetailSlots(id, userId);
         return Result.ok().data("detailSlots", detailSlots);
     }
@@ -0,0 +1,63 @@
+package com.hospital.registration.dto;
+
+import com.hospital.registration.common.TimeSlot;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * @title: BookingContext
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 挂号上下文 - 一次查询取回挂号所需的排班、医生、科室和患者信息
+ */
+@Data
+public class BookingContext {
+
+    // 排班ID
+    private Long scheduleId;
+
+    // 排班日期
+    private LocalDate scheduleDate;
+
+    // 时间段
+    private TimeSlot timeSlot;
+
+    // 剩余号源数
+    private Integer remainingNumber;
+
+    // 排班状态
+    private Integer status;
+
+    // 医生ID
+    private Long doctorId;
+
+    // 医生姓名
+    private String doctorName;
+
+    // 医生职称
+    private String doctorTitle;
+
+    // 挂号费
+    private BigDecimal registrationFee;
+
+    // 科室ID
+    private Long departmentId;
+
+    // 科室名称
+    private String departmentName;
+
+    // 患者ID（患者不存在时为空）
+    private Long patientId;
+
+    // 患者姓名
+    private String patientName;
+
+    // 患者手机号
+    private String patientPhone;
+
+    // 患者身份证号
+    private String patientIdCard;
+}
@@ -0,0 +1,37 @@
+package com.hospital.registration.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * @title: BookingMessage
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 异步挂号消息实体（号源已在Redis中占用）
+ */
+@Data
+public class BookingMessage implements Serializable {
+
+    // 挂号凭证号
+    private String ticketNo;
+
+    // 排班ID
+    private Long scheduleId;
+
+    // 患者ID
+    private Long patientId;
+
+    // 症状描述
+    private String symptom;
+
+    // 细分时段编码
+    private String detailTimeSlot;
+
+    // 提交时间戳(毫秒)
+    private Long submitTime;
+
+    // 已重试次数（数据库瞬时异常时投递到重试队列，首次投递为空）
+    private Integer attempt;
+}
@@ -0,0 +1,63 @@
+package com.hospital.registration.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @title: MqOutbox
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱表
+ */
+@Data
+@TableName("mq_outbox")
+public class MqOutbox {
+
+    // 主键（自增）
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    // 交换机
+    private String exchange;
+
+    // 路由键
+    @TableField("routing_key")
+    private String routingKey;
+
+    // 业务键，如挂号单号
+    @TableField("message_key")
+    private String messageKey;
+
+    // 消息体类型（消费者按此类型反序列化）
+    @TableField("payload_type")
+    private String payloadType;
+
+    // 消息体JSON
+    private String payload;
+
+    // 状态：0-待发送，1-已发送
+    private Integer status;
+
+    // 发送失败次数
+    @TableField("retry_count")
+    private Integer retryCount;
+
+    // 下次发送时间
+    @TableField("next_retry_time")
+    private LocalDateTime nextRetryTime;
+
+    // 最近一次发送失败原因
+    @TableField("last_error")
+    private String lastError;
+
+    // 创建时间
+    @TableField("create_time")
+    private LocalDateTime createTime;
+
+    // 发送确认时间
+    @TableField("sent_time")
+    private LocalDateTime sentTime;
+}
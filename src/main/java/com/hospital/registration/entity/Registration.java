@@ -91,4 +91,8 @@ public class Registration {
     // 细分时段编码
     @TableField("detail_time_slot")
     private String detailTimeSlot;
+
+    // 异步挂号凭证号（同步挂号为空）
+    @TableField("booking_ticket_no")
+    private String bookingTicketNo;
 }
@@ -0,0 +1,37 @@
+package com.hospital.registration.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @title: ScheduleSlotUsage
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班细分时段已预约数表（主键：排班ID + 细分时段）
+ */
+@Data
+@TableName("schedule_slot_usage")
+public class ScheduleSlotUsage {
+
+    // 排班ID（联合主键第一列，MyBatis-Plus只支持单列主键，按主键的读写均使用Mapper中的自定义SQL）
+    @TableId(value = "schedule_id", type = IdType.INPUT)
+    private Long scheduleId;
+
+    // 细分时段编码，如 M_0800
+    @TableField("detail_time_slot")
+    private String detailTimeSlot;
+
+    // 已预约数
+    @TableField("booked_count")
+    private Integer bookedCount;
+
+    // 更新时间
+    @TableField("update_time")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,19 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: PaymentPaidEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 支付成功事件（支付回调更新成功后发布，事务提交后异步发送支付成功通知）
+ */
+@Getter
+@AllArgsConstructor
+public class PaymentPaidEvent {
+
+    // 交易流水号
+    private final String transactionNo;
+}
@@ -0,0 +1,19 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: PermissionChangedEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 权限变化事件（用户角色、角色权限、权限状态变更时发布，用于失效权限缓存）
+ */
+@Getter
+@AllArgsConstructor
+public class PermissionChangedEvent {
+
+    // 用户ID，为null表示影响所有用户（角色或权限本身变更）
+    private final Long userId;
+}
@@ -0,0 +1,22 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: RbacReloadedEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 本节点RBAC快照切换事件（本节点或其他节点的权限变更生效时发布，用于失效派生缓存）
+ */
+@Getter
+@AllArgsConstructor
+public class RbacReloadedEvent {
+
+    // 新快照版本号
+    private final long version;
+
+    // 只更新了单个用户时为该用户ID，整体重新加载时为null
+    private final Long userId;
+}
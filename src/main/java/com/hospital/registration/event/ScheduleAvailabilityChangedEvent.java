@@ -0,0 +1,25 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: ScheduleAvailabilityChangedEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班号源变化事件（挂号、取消挂号、排班编辑时发布，用于失效号源缓存）
+ */
+@Getter
+@AllArgsConstructor
+public class ScheduleAvailabilityChangedEvent {
+
+    // 排班ID
+    private final Long scheduleId;
+
+    // 医生ID
+    private final Long doctorId;
+
+    // 科室ID
+    private final Long departmentId;
+}
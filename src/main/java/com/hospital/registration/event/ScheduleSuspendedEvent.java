@@ -0,0 +1,19 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: ScheduleSuspendedEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班停诊事件（排班状态改为已取消时在同一事务中发布，由挂号服务批量取消该排班的挂号）
+ */
+@Getter
+@AllArgsConstructor
+public class ScheduleSuspendedEvent {
+
+    // 排班ID
+    private final Long scheduleId;
+}
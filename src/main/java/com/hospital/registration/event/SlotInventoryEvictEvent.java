@@ -0,0 +1,19 @@
+package com.hospital.registration.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @title: SlotInventoryEvictEvent
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 号源库存失效事件（排班变更、删除、停诊时发布，事务结束后清除Redis库存）
+ */
+@Getter
+@AllArgsConstructor
+public class SlotInventoryEvictEvent {
+
+    // 排班ID
+    private final Long scheduleId;
+}
@@ -0,0 +1,87 @@
+package com.hospital.registration.filter;
+
+import com.hospital.registration.cache.PermissionCache;
+import com.hospital.registration.common.Constants;
+import com.hospital.registration.common.UserPrincipal;
+import com.hospital.registration.service.PermissionService;
+import com.hospital.registration.service.TokenService;
+import com.hospital.registration.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * @title: AuthenticationFilter
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 认证过滤器
+ * 每个请求只解析一次Token，校验会话有效后构建不可变的UserPrincipal放入request，
+ * 拦截器、切面和Controller均从request读取，不再各自解析Token。
+ * 过滤器只负责解析不负责拒绝，未登录的处理仍由拦截器抛出业务异常统一返回。
+ */
+@Slf4j
+@Component
+public class AuthenticationFilter extends OncePerRequestFilter {
+
+    private final JwtUtil jwtUtil;
+    private final TokenService tokenService;
+    private final PermissionService permissionService;
+
+    /**
+     * 构造器注入
+     */
+    public AuthenticationFilter(JwtUtil jwtUtil, TokenService tokenService, PermissionService permissionService) {
+        this.jwtUtil = jwtUtil;
+        this.tokenService = tokenService;
+        this.permissionService = permissionService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String token = request.getHeader(Constants.Jwt.HEADER);
+        if (token != null && !token.isEmpty() && !"OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            // 去掉Bearer前缀
+            if (token.startsWith(Constants.Jwt.PREFIX)) {
+                token = token.substring(Constants.Jwt.PREFIX.length());
+            }
+            try {
+                UserPrincipal principal = resolve(token, !request.getServletPath().startsWith("/app/"));
+                if (principal != null) {
+                    request.setAttribute(UserPrincipal.ATTRIBUTE, principal);
+                    // 兼容仍从request读取userId的Controller
+                    request.setAttribute("userId", principal.getUserId());
+                }
+            } catch (Exception e) {
+                log.warn("解析登录身份失败: {}", e.getMessage());
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 解析Token并构建登录身份，Token无效或会话已失效时返回null
+     */
+    private UserPrincipal resolve(String token, boolean adminSession) {
+        Claims claims = jwtUtil.parseToken(token);
+        if (claims == null) {
+            return null;
+        }
+        Long userId = claims.get("userId", Long.class);
+        if (userId == null || !tokenService.validateToken(userId, token, adminSession)) {
+            return null;
+        }
+        PermissionCache.UserAuthority authority = permissionService.getUserAuthority(userId);
+        return new UserPrincipal(userId, claims.get("username", String.class), adminSession,
+                authority.isSuperAdmin(), authority.getRoleCodes(), authority.getPermissionCodes(),
+                authority.getPermissionBits(), authority.getDoctorId(), authority.getDepartmentId());
+    }
+}
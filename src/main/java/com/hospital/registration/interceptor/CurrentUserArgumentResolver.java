@@ -0,0 +1,46 @@
+package com.hospital.registration.interceptor;
+
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.CurrentUser;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.common.UserPrincipal;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * @title: CurrentUserArgumentResolver
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: @CurrentUser参数解析器，从request中取AuthenticationFilter解析好的登录身份
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        Class<?> type = parameter.getParameterType();
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (type == UserPrincipal.class || type == Long.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        UserPrincipal principal = (UserPrincipal) webRequest.getAttribute(UserPrincipal.ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (principal == null) {
+            CurrentUser currentUser = parameter.getParameterAnnotation(CurrentUser.class);
+            if (currentUser != null && currentUser.required()) {
+                throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "请先登录");
+            }
+            return null;
+        }
+        return parameter.getParameterType() == Long.class ? principal.getUserId() : principal;
+    }
+}
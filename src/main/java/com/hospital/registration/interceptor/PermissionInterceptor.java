@@ -1,12 +1,11 @@
 package com.hospital.registration.interceptor;
 
+import com.hospital.registration.cache.PermissionRequirementIndex;
 import com.hospital.registration.common.BusinessException;
 import com.hospital.registration.common.Constants;
 import com.hospital.registration.common.RequirePermission;
 import com.hospital.registration.common.ResultCode;
-import com.hospital.registration.service.PermissionService;
-import com.hospital.registration.service.TokenService;
-import com.hospital.registration.utils.JwtUtil;
+import com.hospital.registration.common.UserPrincipal;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -19,23 +18,19 @@ import org.springframework.web.servlet.HandlerInterceptor;
  * @author: Su
  * @date: 2026/2/17
  * @version: 1.0
- * @description: 权限拦截器，校验用户是否拥有接口所需权限
+ * @description: 权限拦截器，校验用户是否拥有接口所需权限（登录身份由AuthenticationFilter解析）
  */
 @Slf4j
 @Component
 public class PermissionInterceptor implements HandlerInterceptor {
 
-    private final JwtUtil jwtUtil;
-    private final PermissionService permissionService;
-    private final TokenService tokenService;
+    private final PermissionRequirementIndex permissionRequirementIndex;
 
     /**
      * 构造器注入
      */
-    public PermissionInterceptor(JwtUtil jwtUtil, PermissionService permissionService,TokenService tokenService) {
-        this.jwtUtil = jwtUtil;
-        this.permissionService = permissionService;
-        this.tokenService = tokenService;
+    public PermissionInterceptor(PermissionRequirementIndex permissionRequirementIndex) {
+        this.permissionRequirementIndex = permissionRequirementIndex;
     }
 
     @Override
@@ -52,61 +47,42 @@ public class PermissionInterceptor implements HandlerInterceptor {
 
         HandlerMethod handlerMethod = (HandlerMethod) handler;
 
-        // 从请求头获取Token
-        String token = request.getHeader("Authorization");
-        if (token == null || token.isEmpty()) {
-            log.warn("权限校验失败 - 未提供Token");
-            throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "请先登录");
-        }
-        // 去掉Bearer前缀
-        if (token.startsWith(Constants.Jwt.PREFIX)) {
-            token = token.substring(7);
-        }
-        // 验证Token并获取用户ID
-        Long userId;
-        try {
-            userId = jwtUtil.getUserIdFromToken(token);
-        } catch (Exception e) {
-            log.warn("权限校验失败 - Token无效: {}", e.getMessage());
+        // 获取登录身份
+        UserPrincipal principal = (UserPrincipal) request.getAttribute(UserPrincipal.ATTRIBUTE);
+        if (principal == null) {
+            String token = request.getHeader(Constants.Jwt.HEADER);
+            if (token == null || token.isEmpty()) {
+                log.warn("权限校验失败 - 未提供Token");
+                throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "请先登录");
+            }
+            log.warn("权限校验失败 - Token无效或已登出, URI: {}", request.getRequestURI());
             throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "登录已过期，请重新登录");
         }
-        if (userId == null) {
-            log.warn("权限校验失败 - 无法获取用户ID");
-            throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "登录已过期，请重新登录");
-        }
-        // 验证Token是否在Redis中有效（未登出）
-        if (!tokenService.validateToken(userId, token, true)) {
-            log.warn("权限校验失败 - Token已失效或已登出, 用户ID: {}", userId);
-            throw new BusinessException(ResultCode.UNAUTHORIZED.getCode(), "登录已过期，请重新登录");
-        }
-
-        // 将用户ID存入request，供Controller使用
-        request.setAttribute("userId", userId);
-        // 获取方法上的权限注解
-        RequirePermission requirePermission = handlerMethod.getMethodAnnotation(RequirePermission.class);
+        Long userId = principal.getUserId();
 
-        // 如果没有权限注解，直接放行
-        if (requirePermission == null) {
+        // 索引构建前（启动瞬间）退回到反射读取注解
+        if (!permissionRequirementIndex.isReady()) {
+            RequirePermission requirePermission = handlerMethod.getMethodAnnotation(RequirePermission.class);
+            if (requirePermission != null && !principal.hasPermission(requirePermission.value())) {
+                log.warn("权限校验失败 - 用户ID: {}, 缺少权限: {}", userId, requirePermission.value());
+                throw new BusinessException(ResultCode.FORBIDDEN.getCode(), "没有操作权限");
+            }
             return true;
         }
 
-        // 获取需要的权限编码
-        String permissionCode = requirePermission.value();
-        log.info("权限校验 - 接口: {}, 需要权限: {}", request.getRequestURI(), permissionCode);
-
-        // 超级管理员跳过权限检查
-        if (permissionService.isSuperAdmin(userId)) {
-            log.info("超级管理员跳过权限检查 - 用户ID: {}", userId);
+        // 接口所需权限序号，-1表示无需权限
+        int ordinal = permissionRequirementIndex.getOrdinal(handlerMethod.getMethod());
+        if (ordinal < 0) {
             return true;
         }
-        // 校验用户是否拥有该权限
-        boolean hasPermission = permissionService.hasPermission(userId, permissionCode);
-        if (!hasPermission) {
-            log.warn("权限校验失败 - 用户ID: {}, 缺少权限: {}", userId, permissionCode);
+
+        // 超级管理员跳过权限检查，其余按位图校验
+        if (!principal.hasPermission(ordinal)) {
+            log.warn("权限校验失败 - 用户ID: {}, 接口: {}", userId, request.getRequestURI());
             throw new BusinessException(ResultCode.FORBIDDEN.getCode(), "没有操作权限");
         }
 
-        log.info("权限校验通过 - 用户ID: {}, 权限: {}", userId, permissionCode);
+        log.debug("权限校验通过 - 用户ID: {}, 接口: {}", userId, request.getRequestURI());
         return true;
     }
 }
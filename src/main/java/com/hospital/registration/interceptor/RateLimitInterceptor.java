@@ -0,0 +1,83 @@
+package com.hospital.registration.interceptor;
+
+import com.hospital.registration.config.RateLimitConfig;
+import com.hospital.registration.service.RateLimitService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * @title: RateLimitInterceptor
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 患者端限流拦截器，在进入Controller前按IP和用户限流
+ * 需注册在AppAuthInterceptor之后，以便读取已解析的用户ID
+ * 客户端IP只在请求来自受信任代理时才取自转发头，否则取连接地址，防止伪造请求头绕过IP限流
+ */
+@Slf4j
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimitService rateLimitService;
+    private final RateLimitConfig rateLimitConfig;
+
+    /**
+     * 构造器注入
+     */
+    public RateLimitInterceptor(RateLimitService rateLimitService, RateLimitConfig rateLimitConfig) {
+        this.rateLimitService = rateLimitService;
+        this.rateLimitConfig = rateLimitConfig;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 放行 OPTIONS 预检请求
+        if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            return true;
+        }
+        rateLimitService.checkIp(getIpAddress(request));
+        Object userId = request.getAttribute("userId");
+        if (userId instanceof Long) {
+            rateLimitService.checkUser((Long) userId);
+        }
+        return true;
+    }
+
+    /**
+     * 获取客户端IP地址
+     * 连接地址不是受信任代理时直接使用连接地址；否则从X-Forwarded-For右侧向左跳过受信任代理，
+     * 取第一个不受信任的地址（最左侧的地址可由客户端任意填写，不能使用）
+     */
+    private String getIpAddress(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && !"unknown".equalsIgnoreCase(hop) && !isTrustedProxy(hop)) {
+                    return hop;
+                }
+            }
+        }
+        String realIp = request.getHeader("X-Real-IP");
+        if (realIp != null && !realIp.isEmpty() && !"unknown".equalsIgnoreCase(realIp)) {
+            return realIp.trim();
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 是否为受信任的代理地址
+     */
+    private boolean isTrustedProxy(String ip) {
+        return ip != null && rateLimitConfig.getTrustedProxies() != null
+                && rateLimitConfig.getTrustedProxies().contains(ip);
+    }
+}
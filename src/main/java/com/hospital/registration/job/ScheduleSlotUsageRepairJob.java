@@ -0,0 +1,36 @@
+package com.hospital.registration.job;
+
+import com.hospital.registration.service.ScheduleSlotUsageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * @title: ScheduleSlotUsageRepairJob
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 细分时段已预约数修复任务 - 每天凌晨根据挂号记录重新统计今天及之后的排班
+ */
+@Slf4j
+@Component
+public class ScheduleSlotUsageRepairJob {
+
+    private final ScheduleSlotUsageService scheduleSlotUsageService;
+
+    public ScheduleSlotUsageRepairJob(ScheduleSlotUsageService scheduleSlotUsageService) {
+        this.scheduleSlotUsageService = scheduleSlotUsageService;
+    }
+
+    @Scheduled(cron = "${hospital.slot-usage.repair-cron:0 30 3 * * ?}")
+    public void repair() {
+        log.info("【定时任务】开始修复细分时段已预约数");
+        try {
+            scheduleSlotUsageService.repair(LocalDate.now());
+        } catch (Exception e) {
+            log.error("【定时任务】修复细分时段已预约数失败 - 错误: {}", e.getMessage(), e);
+        }
+    }
+}
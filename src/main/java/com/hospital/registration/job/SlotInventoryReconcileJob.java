@@ -0,0 +1,33 @@
+package com.hospital.registration.job;
+
+import com.hospital.registration.service.SlotInventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @title: SlotInventoryReconcileJob
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 号源库存对账任务 - 定时比对Redis库存与数据库，多节点部署时只有持有锁的节点执行
+ */
+@Slf4j
+@Component
+public class SlotInventoryReconcileJob {
+
+    private final SlotInventoryService slotInventoryService;
+
+    public SlotInventoryReconcileJob(SlotInventoryService slotInventoryService) {
+        this.slotInventoryService = slotInventoryService;
+    }
+
+    @Scheduled(cron = "${hospital.slot-inventory.reconcile-cron:0 */10 * * * ?}")
+    public void reconcile() {
+        try {
+            slotInventoryService.reconcile();
+        } catch (Exception e) {
+            log.error("【定时任务】号源库存对账失败 - 错误: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.hospital.registration.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.annotation.DataScope;
 import com.hospital.registration.entity.MedicalRecord;
 import com.hospital.registration.vo.MedicalRecordVO;
 import org.apache.ibatis.annotations.Mapper;
@@ -39,8 +40,9 @@ public interface MedicalRecordMapper extends BaseMapper<MedicalRecord> {
     List<MedicalRecordVO> selectByDoctorId(@Param("doctorId") Long doctorId);
 
     /**
-     * 分页查询医生历史病历
+     * 分页查询医生历史病历（按数据权限过滤：管理员全部，医生本人）
      */
+    @DataScope(table = "medical_record", doctorColumn = "doctor_id")
     Page<MedicalRecordVO> selectDoctorHistoryPage(Page<MedicalRecordVO> page,
                                                   @Param("doctorId") Long doctorId,
                                                   @Param("patientName") String patientName,
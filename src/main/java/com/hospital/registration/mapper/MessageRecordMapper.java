@@ -51,5 +51,10 @@ public interface MessageRecordMapper extends BaseMapper<MessageRecord> {
      * 批量删除消息记录
      */
     void batchDelete(@Param("ids") List<Long> ids);
+
+    /**
+     * 批量插入消息记录
+     */
+    int batchInsert(@Param("records") List<MessageRecord> records);
 }
 
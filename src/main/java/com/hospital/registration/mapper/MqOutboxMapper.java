@@ -0,0 +1,50 @@
+package com.hospital.registration.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hospital.registration.entity.MqOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @title: MqOutboxMapper
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱Mapper
+ */
+@Mapper
+public interface MqOutboxMapper extends BaseMapper<MqOutbox> {
+
+    /**
+     * 批量写入待发送消息
+     */
+    int batchInsert(@Param("records") List<MqOutbox> records);
+
+    /**
+     * 锁定一批到期的待发送消息（跳过其他节点已锁定的行）
+     */
+    List<MqOutbox> selectPendingForUpdate(@Param("limit") int limit);
+
+    /**
+     * 批量标记为已发送
+     */
+    int markSent(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 发送失败：失败次数加一，按指数退避推迟下次发送时间（最长5分钟）
+     */
+    int markRetry(@Param("ids") Collection<Long> ids, @Param("error") String error);
+
+    /**
+     * 统计待发送消息数
+     */
+    long countPending();
+
+    /**
+     * 清理指定天数之前已发送的消息
+     */
+    int deleteSentBefore(@Param("days") int days);
+}
@@ -7,6 +7,8 @@ import com.hospital.registration.vo.PaymentVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -44,4 +46,23 @@ public interface PaymentMapper extends BaseMapper<Payment> {
                                           @Param("paymentMethod") String paymentMethod,
                                           @Param("startDate") String startDate,
                                           @Param("endDate") String endDate);
+
+    /**
+     * 将挂号对应的已支付记录批量标记为退款中
+     */
+    int markRefundingByRegistrationIds(@Param("registrationIds") Collection<Long> registrationIds);
+
+    /**
+     * 支付回调：待支付的订单连同挂号记录一次更新为已支付（挂号已取消时不更新）
+     * @return 影响行数，0表示订单不存在、不是待支付状态或挂号已取消
+     */
+    int markPaidByTransactionNo(@Param("transactionNo") String transactionNo);
+
+    /**
+     * 退款完成：退款中的支付记录更新为已退款
+     * @return 影响行数，0表示记录已不是退款中状态
+     */
+    int markRefundedIfRefunding(@Param("id") Long id,
+                                @Param("refundTime") LocalDateTime refundTime,
+                                @Param("remark") String remark);
 }
@@ -2,12 +2,14 @@ package com.hospital.registration.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.annotation.DataScope;
 import com.hospital.registration.entity.Registration;
 import com.hospital.registration.vo.RegistrationVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +29,13 @@ public interface RegistrationMapper extends BaseMapper<Registration> {
      */
     Registration selectByRegistrationNo(@Param("registrationNo") String registrationNo);
 
+    /**
+     * 根据异步挂号凭证号查询挂号记录
+     * @param bookingTicketNo 挂号凭证号
+     * @return 挂号记录
+     */
+    Registration selectByBookingTicketNo(@Param("bookingTicketNo") String bookingTicketNo);
+
     /**
      * 查询指定排班的当前最大排队号
      * @param scheduleId 排班ID
@@ -81,23 +90,17 @@ public interface RegistrationMapper extends BaseMapper<Registration> {
      */
     Long countByScheduleId(@Param("scheduleId") Long scheduleId);
 
-    /**
-     * 查询医生今日待诊列表
-     */
-    List<RegistrationVO> selectDoctorTodayPatients(@Param("doctorId") Long doctorId,
-                                                   @Param("registrationDate") LocalDate registrationDate);
-
-    /**
-     * 统计排班下各细分时段的已预约数量
-     */
-    List<Map<String, Object>> countByScheduleAndDetailSlot(@Param("scheduleId") Long scheduleId);
-
     /**
      * 查询用户在指定排班下已预约的细分时段
      */
     List<String> selectBookedDetailSlots(@Param("patientId") Long patientId,
                                          @Param("scheduleId") Long scheduleId);
 
+    /**
+     * 查询排班下所有有效预约的患者及细分时段（号源库存预热用）
+     */
+    List<Registration> selectActiveSlotBookings(@Param("scheduleId") Long scheduleId);
+
 
     /**
      * 分页查询挂号列表（增强版）
@@ -146,10 +149,21 @@ public interface RegistrationMapper extends BaseMapper<Registration> {
     List<Map<String, Object>> selectDepartmentRatio();
 
     /**
-     * 查询所有今日待诊患者（管理员用）
+     * 查询今日待诊患者（按数据权限过滤：管理员全部，医生本人）
      * @param date 日期
      * @return 挂号VO列表
      */
-    List<RegistrationVO> selectAllTodayPatients(@Param("date") LocalDate date);
-}
+    @DataScope(table = "registration", doctorColumn = "doctor_id")
+    List<RegistrationVO> selectTodayPatients(@Param("date") LocalDate date);
+
+    /**
+     * 查询排班下可取消的挂号并加行锁（停诊批量取消）
+     */
+    List<Registration> selectCancellableByScheduleForUpdate(@Param("scheduleId") Long scheduleId);
 
+    /**
+     * 批量取消挂号，已支付的同时标记为已退款
+     * @return 实际取消的记录数
+     */
+    int batchCancel(@Param("ids") Collection<Long> ids);
+}
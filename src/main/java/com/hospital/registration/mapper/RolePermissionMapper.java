@@ -5,6 +5,7 @@ import com.hospital.registration.entity.RolePermission;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -32,5 +33,23 @@ public interface RolePermissionMapper extends BaseMapper<RolePermission> {
      * @return 删除数量
      */
     int deleteByRoleId(@Param("roleId") Long roleId);
-}
 
+    /**
+     * 批量插入角色权限关联（多行INSERT）
+     *
+     * @param roleId        角色ID
+     * @param permissionIds 权限ID列表
+     * @return 插入数量
+     */
+    int batchInsert(@Param("roleId") Long roleId, @Param("permissionIds") Collection<Long> permissionIds);
+
+    /**
+     * 删除角色的指定权限关联
+     *
+     * @param roleId        角色ID
+     * @param permissionIds 权限ID列表
+     * @return 删除数量
+     */
+    int deleteByRoleIdAndPermissionIds(@Param("roleId") Long roleId,
+                                       @Param("permissionIds") Collection<Long> permissionIds);
+}
@@ -2,6 +2,7 @@ package com.hospital.registration.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.dto.BookingContext;
 import com.hospital.registration.entity.Schedule;
 import com.hospital.registration.vo.ScheduleVO;
 import org.apache.ibatis.annotations.Mapper;
@@ -95,11 +96,43 @@ public interface ScheduleMapper extends BaseMapper<Schedule> {
      */
     int decreaseRemainingNumber(@Param("id") Long id);
 
+    /**
+     * 挂号扣减号源：排班可预约、未过期、有剩余号源且细分时段未满时才扣减
+     * @param id 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @return 影响行数(0表示不可预约)
+     */
+    int decreaseRemainingNumberForBooking(@Param("id") Long id,
+                                          @Param("detailTimeSlot") String detailTimeSlot);
+
+    /**
+     * 查询挂号上下文(排班、医生、科室、患者信息一次取回)
+     * @param scheduleId 排班ID
+     * @param patientId 患者ID
+     * @return 挂号上下文，排班不存在时返回null
+     */
+    BookingContext selectBookingContext(@Param("scheduleId") Long scheduleId,
+                                        @Param("patientId") Long patientId);
+
     /**
      * 增加剩余号源数
      * @param id 排班ID
      * @return 影响行数
      */
     int increaseRemainingNumber(@Param("id") Long id);
-}
 
+    /**
+     * 批量回补剩余号源数（不超过总号源数）
+     * @param id 排班ID
+     * @param count 回补数量
+     * @return 影响行数
+     */
+    int increaseRemainingNumberBy(@Param("id") Long id, @Param("count") int count);
+
+    /**
+     * 查询指定日期及之后的排班ID（号源库存对账用）
+     * @param startDate 开始日期
+     * @return 排班ID列表
+     */
+    List<Long> selectIdsFromDate(@Param("startDate") LocalDate startDate);
+}
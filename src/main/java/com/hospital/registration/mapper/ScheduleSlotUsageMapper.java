@@ -0,0 +1,77 @@
+package com.hospital.registration.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hospital.registration.entity.ScheduleSlotUsage;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @title: ScheduleSlotUsageMapper
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班细分时段已预约数Mapper
+ */
+@Mapper
+public interface ScheduleSlotUsageMapper extends BaseMapper<ScheduleSlotUsage> {
+
+    /**
+     * 已预约数加一（记录不存在时插入）
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @return 影响行数
+     */
+    int increaseBookedCount(@Param("scheduleId") Long scheduleId,
+                            @Param("detailTimeSlot") String detailTimeSlot);
+
+    /**
+     * 已预约数减一（不小于0）
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @return 影响行数
+     */
+    int decreaseBookedCount(@Param("scheduleId") Long scheduleId,
+                            @Param("detailTimeSlot") String detailTimeSlot);
+
+    /**
+     * 查询排班下各细分时段的已预约数
+     * @param scheduleId 排班ID
+     * @return 已预约数列表
+     */
+    List<ScheduleSlotUsage> selectByScheduleId(@Param("scheduleId") Long scheduleId);
+
+    /**
+     * 查询排班下各细分时段的已预约数并加锁（修复时阻塞并发的增减）
+     * @param scheduleId 排班ID
+     * @return 已预约数列表
+     */
+    List<ScheduleSlotUsage> selectByScheduleIdForUpdate(@Param("scheduleId") Long scheduleId);
+
+    /**
+     * 根据挂号记录统计排班下各细分时段的实际预约数
+     * @param scheduleId 排班ID
+     * @return 实际预约数列表
+     */
+    List<ScheduleSlotUsage> countActiveBookings(@Param("scheduleId") Long scheduleId);
+
+    /**
+     * 设置已预约数（记录不存在时插入）
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @param bookedCount 已预约数
+     * @return 影响行数
+     */
+    int upsertBookedCount(@Param("scheduleId") Long scheduleId,
+                          @Param("detailTimeSlot") String detailTimeSlot,
+                          @Param("bookedCount") Integer bookedCount);
+
+    /**
+     * 查询指定日期及之后的排班ID
+     * @param startDate 开始日期
+     * @return 排班ID列表
+     */
+    List<Long> selectScheduleIdsFrom(@Param("startDate") LocalDate startDate);
+}
@@ -7,6 +7,7 @@ import com.hospital.registration.vo.UserVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -64,11 +65,24 @@ public interface UserMapper extends BaseMapper<User> {
      */
     int batchUpdateStatus(@Param("ids") List<Long> ids, @Param("status") Integer status);
 
+    /**
+     * 批量逻辑删除用户
+     */
+    int batchLogicDelete(@Param("ids") Collection<Long> ids);
+
     /**
      * 重置密码
      */
     int updatePassword(@Param("id") Long id, @Param("password") String password);
 
+    /**
+     * 密码哈希未被修改时更新为新哈希（登录后升级哈希强度，避免覆盖并发修改的新密码）
+     * @return 影响行数，0表示密码已被修改
+     */
+    int updatePasswordIfMatch(@Param("id") Long id,
+                              @Param("password") String password,
+                              @Param("oldPassword") String oldPassword);
+
     /**
      * 根据手机号查询用户
      */
@@ -6,6 +6,7 @@ import com.hospital.registration.entity.UserRole;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -38,4 +39,30 @@ public interface UserRoleMapper extends BaseMapper<UserRole> {
      * 查询用户的角色编码列表
      */
     List<String> selectRoleCodesByUserId(@Param("userId") Long userId);
+
+    /**
+     * 查询用户的角色ID列表
+     *
+     * @param userId 用户ID
+     * @return 角色ID列表
+     */
+    List<Long> selectRoleIdsByUserId(@Param("userId") Long userId);
+
+    /**
+     * 批量插入用户角色关联（多行INSERT）
+     *
+     * @param userId  用户ID
+     * @param roleIds 角色ID列表
+     * @return 插入数量
+     */
+    int batchInsert(@Param("userId") Long userId, @Param("roleIds") Collection<Long> roleIds);
+
+    /**
+     * 删除用户的指定角色关联
+     *
+     * @param userId  用户ID
+     * @param roleIds 角色ID列表
+     * @return 删除数量
+     */
+    int deleteByUserIdAndRoleIds(@Param("userId") Long userId, @Param("roleIds") Collection<Long> roleIds);
 }
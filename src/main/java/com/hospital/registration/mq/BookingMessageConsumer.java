@@ -0,0 +1,83 @@
+package com.hospital.registration.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.registration.config.RabbitMQConfig;
+import com.hospital.registration.dto.BookingMessage;
+import com.hospital.registration.service.BookingService;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @title: BookingMessageConsumer
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 挂号消息消费者（批量消费）
+ */
+@Slf4j
+@Component
+public class BookingMessageConsumer {
+
+    private final BookingService bookingService;
+    private final ObjectMapper objectMapper;
+    private final RabbitTemplate rabbitTemplate;
+
+    public BookingMessageConsumer(BookingService bookingService, ObjectMapper objectMapper,
+                                  RabbitTemplate rabbitTemplate) {
+        this.bookingService = bookingService;
+        this.objectMapper = objectMapper;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * 监听挂号队列，批量处理挂号消息
+     * 每条消息独立事务并逐条确认：处理成功（含已投递重试）后确认；无法处理的消息转入死信队列后确认，
+     * 转入失败时拒绝并重新入队，不随整批确认丢失
+     */
+    @RabbitListener(queues = RabbitMQConfig.BOOKING_QUEUE, containerFactory = "bookingListenerContainerFactory")
+    public void handleBookingMessages(List<Message> messages, Channel channel) throws IOException {
+        log.info("【挂号消费者】收到挂号消息 - 本批数量: {}", messages.size());
+
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            BookingMessage bookingMessage;
+            try {
+                bookingMessage = objectMapper.readValue(message.getBody(), BookingMessage.class);
+            } catch (IOException e) {
+                log.error("【挂号消费者】消息解析失败，转入死信队列 - 错误: {}", e.getMessage());
+                parkOrRequeue(message, e, channel);
+                continue;
+            }
+            try {
+                bookingService.processBooking(bookingMessage);
+                channel.basicAck(deliveryTag, false);
+            } catch (Exception e) {
+                log.error("【挂号消费者】挂号处理异常，转入死信队列 - 凭证号: {}, 错误: {}",
+                        bookingMessage.getTicketNo(), e.getMessage(), e);
+                parkOrRequeue(message, e, channel);
+            }
+        }
+    }
+
+    /**
+     * 转入挂号死信队列后确认原消息；转入失败时拒绝并重新入队
+     */
+    private void parkOrRequeue(Message message, Exception cause, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        try {
+            message.getMessageProperties().setHeader(RabbitMQConfig.BOOKING_ERROR_HEADER, String.valueOf(cause.getMessage()));
+            rabbitTemplate.send(RabbitMQConfig.BOOKING_EXCHANGE, RabbitMQConfig.BOOKING_DLQ_ROUTING_KEY, message);
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            log.error("【挂号消费者】转入死信队列失败，重新入队 - 错误: {}", e.getMessage());
+            channel.basicNack(deliveryTag, false, true);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.hospital.registration.mq;
+
+import com.hospital.registration.config.OutboxConfig;
+import com.hospital.registration.entity.MqOutbox;
+import com.hospital.registration.mapper.MqOutboxMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @title: OutboxRelay
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱中继
+ * 在事务中以 FOR UPDATE SKIP LOCKED 锁定一批待发送消息，在同一通道上连续发送后统一等待发布确认，
+ * 确认成功的标记为已发送，未确认或超时的按指数退避稍后重发（至少一次投递）。多节点部署时各节点锁定不同的行。
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final MqOutboxMapper mqOutboxMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxConfig outboxConfig;
+
+    // 单线程中继，多次唤醒合并为一次
+    private final ExecutorService relayExecutor;
+    private final AtomicBoolean relayPending = new AtomicBoolean();
+
+    // 投递统计
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder confirmTotalMillis = new LongAdder();
+    private final AtomicLong confirmMaxMillis = new AtomicLong();
+
+    /**
+     * 构造器注入
+     */
+    public OutboxRelay(MqOutboxMapper mqOutboxMapper, RabbitTemplate rabbitTemplate,
+                       TransactionTemplate transactionTemplate, OutboxConfig outboxConfig) {
+        this.mqOutboxMapper = mqOutboxMapper;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxConfig = outboxConfig;
+        this.relayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 关闭中继线程
+     */
+    @PreDestroy
+    public void shutdownRelayExecutor() {
+        relayExecutor.shutdown();
+    }
+
+    /**
+     * 唤醒中继投递待发送消息
+     */
+    public void wakeUp() {
+        if (!relayPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            relayExecutor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            relayPending.set(false);
+        }
+    }
+
+    /**
+     * 定时轮询（兜底：唤醒丢失、重发到期、其他节点写入的消息）
+     */
+    @Scheduled(fixedDelayString = "${hospital.outbox.poll-interval-millis:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * 清理已发送的历史消息
+     */
+    @Scheduled(cron = "${hospital.outbox.cleanup-cron:0 0 4 * * ?}")
+    public void cleanup() {
+        try {
+            int deleted = mqOutboxMapper.deleteSentBefore(outboxConfig.getRetentionDays());
+            log.info("【发件箱】已清理历史消息 - 数量: {}", deleted);
+        } catch (Exception e) {
+            log.error("【发件箱】清理历史消息失败 - 错误: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 持续投递直到没有满批的待发送消息
+     */
+    private void drain() {
+        relayPending.set(false);
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed >= outboxConfig.getBatchSize());
+        } catch (Exception e) {
+            log.error("【发件箱】投递失败，等待下次轮询 - 错误: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 投递一批消息
+     * @return 本批锁定的消息数，发送异常时返回0以结束本轮投递
+     */
+    private int relayBatch() {
+        List<MqOutbox> batch = mqOutboxMapper.selectPendingForUpdate(outboxConfig.getBatchSize());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
+
+        List<CorrelationData> confirms;
+        try {
+            confirms = rabbitTemplate.invoke(operations -> {
+                List<CorrelationData> correlations = new ArrayList<>(batch.size());
+                for (MqOutbox record : batch) {
+                    CorrelationData correlation = new CorrelationData(String.valueOf(record.getId()));
+                    operations.send(record.getExchange(), record.getRoutingKey(), toMessage(record), correlation);
+                    correlations.add(correlation);
+                }
+                return correlations;
+            });
+        } catch (AmqpException e) {
+            log.error("【发件箱】发送消息失败 - 数量: {}, 错误: {}", batch.size(), e.getMessage());
+            mqOutboxMapper.markRetry(batch.stream().map(MqOutbox::getId).toList(), e.getMessage());
+            failedCount.add(batch.size());
+            return 0;
+        }
+
+        // 全部发出后统一等待确认
+        long deadline = startTime + TimeUnit.SECONDS.toMillis(outboxConfig.getConfirmTimeoutSeconds());
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        List<Long> failedIds = new ArrayList<>();
+        String lastError = null;
+        for (int i = 0; i < batch.size(); i++) {
+            Long id = batch.get(i).getId();
+            try {
+                CorrelationData.Confirm confirm = confirms.get(i).getFuture()
+                        .get(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+                if (confirm.isAck()) {
+                    sentIds.add(id);
+                } else {
+                    failedIds.add(id);
+                    lastError = "nack: " + confirm.getReason();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedIds.add(id);
+                lastError = "interrupted";
+            } catch (Exception e) {
+                failedIds.add(id);
+                lastError = "confirm timeout";
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            mqOutboxMapper.markSent(sentIds);
+        }
+        if (!failedIds.isEmpty()) {
+            mqOutboxMapper.markRetry(failedIds, lastError);
+            log.warn("【发件箱】部分消息未确认，稍后重发 - 数量: {}, 原因: {}", failedIds.size(), lastError);
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        publishedCount.add(sentIds.size());
+        failedCount.add(failedIds.size());
+        batchCount.increment();
+        confirmTotalMillis.add(elapsed);
+        confirmMaxMillis.accumulateAndGet(elapsed, Math::max);
+        log.debug("【发件箱】批量投递完成 - 数量: {}, 已确认: {}, 耗时: {}ms", batch.size(), sentIds.size(), elapsed);
+        return batch.size();
+    }
+
+    /**
+     * 构建与Jackson2JsonMessageConverter一致的JSON消息
+     */
+    private Message toMessage(MqOutbox record) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, record.getPayloadType());
+        properties.setMessageId("outbox-" + record.getId());
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        return new Message(record.getPayload().getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    /**
+     * 发件箱统计
+     */
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        try {
+            stats.put("pending", mqOutboxMapper.countPending());
+        } catch (Exception e) {
+            stats.put("pending", -1);
+        }
+        stats.put("publishedCount", publishedCount.sum());
+        stats.put("failedCount", failedCount.sum());
+        stats.put("batchCount", batches);
+        stats.put("batchAvgMillis", batches == 0 ? 0 : confirmTotalMillis.sum() / batches);
+        stats.put("batchMaxMillis", confirmMaxMillis.get());
+        return stats;
+    }
+}
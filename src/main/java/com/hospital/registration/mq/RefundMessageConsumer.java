@@ -3,20 +3,35 @@ package com.hospital.registration.mq;
 
 import com.hospital.registration.common.PaymentStatus;
 import com.hospital.registration.config.RabbitMQConfig;
+import com.hospital.registration.config.RefundConfig;
 import com.hospital.registration.dto.RefundMessage;
 import com.hospital.registration.entity.Payment;
 import com.hospital.registration.entity.Registration;
 import com.hospital.registration.mapper.PaymentMapper;
 import com.hospital.registration.mapper.RegistrationMapper;
 import com.hospital.registration.service.MessageService;
-import com.rabbitmq.client.Channel;
+import com.hospital.registration.service.RefundGatewayService;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.QueueInformation;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @title: RefundMessageConsumer
@@ -24,112 +39,309 @@ import java.time.LocalDateTime;
  * @date: 2026/2/14
  * @version: 1.0
  * @description: 退款消息消费者
+ * 监听方法只发起渠道退款并立即返回Future，渠道完成后在退款线程池中落库，Future完成时由容器确认消息；
+ * 同时处理中的消息数 = 消费者数 × 预取数，批量取消挂号时不再按渠道耗时串行排队。
+ * 失败的消息带上已重试次数投递到对应级别的延迟队列，到期后回到退款队列；重试耗尽后标记退款失败并转入死信队列。
+ * 发件箱与broker均为至少一次投递：调用渠道前先检查支付状态，只有退款中的订单才调用渠道；
+ * 渠道已退款但落库失败时，重试消息带上渠道已完成标记，只重试落库，不再调用渠道。
  */
 @Slf4j
 @Component
 public class RefundMessageConsumer {
 
-    private static final int MAX_RETRY_COUNT = 3;
     private final PaymentMapper paymentMapper;
     private final MessageService messageService;
     private final RegistrationMapper registrationMapper;
+    private final RefundGatewayService refundGatewayService;
+    private final RefundConfig refundConfig;
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
 
-    public RefundMessageConsumer(PaymentMapper paymentMapper, MessageService messageService, RegistrationMapper registrationMapper) {
+    // 退款结果落库线程池（渠道回调线程不执行数据库操作）
+    private final ThreadPoolExecutor refundExecutor;
+
+    // 处理统计
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder redeliveredCount = new LongAdder();
+    private final LongAdder retriedDeliveryCount = new LongAdder();
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder skippedCount = new LongAdder();
+    // 各级重试投递次数（下标为级别-1）
+    private final LongAdder[] retryCounts;
+    private final LongAdder latencyTotalMillis = new LongAdder();
+    private final AtomicLong latencyMaxMillis = new AtomicLong();
+
+    public RefundMessageConsumer(PaymentMapper paymentMapper, MessageService messageService,
+                                 RegistrationMapper registrationMapper, RefundGatewayService refundGatewayService,
+                                 RefundConfig refundConfig, RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin) {
         this.paymentMapper = paymentMapper;
         this.messageService = messageService;
         this.registrationMapper = registrationMapper;
+        this.refundGatewayService = refundGatewayService;
+        this.refundConfig = refundConfig;
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.retryCounts = new LongAdder[refundConfig.getMaxRetries()];
+        for (int i = 0; i < retryCounts.length; i++) {
+            retryCounts[i] = new LongAdder();
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = refundConfig.getWorkerThreads();
+        this.refundExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "refund-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 关闭退款线程池
+     */
+    @PreDestroy
+    public void shutdownRefundExecutor() {
+        refundExecutor.shutdown();
     }
 
     /**
      * 监听退款队列，处理退款消息
+     * 返回的Future正常完成时确认消息（包括已转入重试队列或死信队列的失败消息），异常完成时拒绝进入死信队列
      */
-    @RabbitListener(queues = RabbitMQConfig.REFUND_QUEUE)
-    public void handleRefundMessage(RefundMessage refundMessage, Message message, Channel channel) throws IOException {
-        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+    @RabbitListener(queues = RabbitMQConfig.REFUND_QUEUE, containerFactory = "refundListenerContainerFactory")
+    public CompletableFuture<Void> handleRefundMessage(RefundMessage refundMessage, Message message) {
+        log.info("【退款消费者】收到退款消息 - 挂号单号: {}, 金额: {}",
+                refundMessage.getRegistrationNo(), refundMessage.getAmount());
+        long startTime = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        receivedCount.increment();
+        if (Boolean.TRUE.equals(message.getMessageProperties().getRedelivered())) {
+            // 连接断开等原因被broker重新投递
+            redeliveredCount.increment();
+        }
+        if (getAttempt(message) > 0) {
+            retriedDeliveryCount.increment();
+        }
 
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        // 渠道是否已退款（重试消息带标记时跳过渠道调用，只重试落库）
+        AtomicBoolean gatewayDone = new AtomicBoolean(isGatewayDone(message));
+        AtomicBoolean skipped = new AtomicBoolean();
+        CompletableFuture.supplyAsync(() -> paymentMapper.selectByRegistrationId(refundMessage.getRegistrationId()), refundExecutor)
+                .thenCompose(payment -> {
+                    if (!isRefundable(payment, refundMessage)) {
+                        skipped.set(true);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (gatewayDone.get()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return callGateway(refundMessage).thenRun(() -> gatewayDone.set(true));
+                })
+                // 更新支付记录状态为已退款
+                .thenRunAsync(() -> {
+                    if (!skipped.get()) {
+                        markRefunded(refundMessage);
+                    }
+                }, refundExecutor)
+                .whenCompleteAsync((ignored, ex) -> {
+                    inFlight.decrementAndGet();
+                    if (ex == null) {
+                        recordLatency(System.currentTimeMillis() - startTime);
+                        if (skipped.get()) {
+                            skippedCount.increment();
+                        } else {
+                            successCount.increment();
+                            log.info("【退款消费者】退款处理成功 - 挂号单号: {}", refundMessage.getRegistrationNo());
+                        }
+                        result.complete(null);
+                    } else {
+                        handleFailure(refundMessage, message, ex instanceof CompletionException ? ex.getCause() : ex,
+                                gatewayDone.get(), result);
+                    }
+                }, refundExecutor);
+        return result;
+    }
+
+    /**
+     * 支付记录是否需要调用渠道退款：只有退款中的订单才退款，已退款（重复投递）或其他状态直接确认
+     */
+    private boolean isRefundable(Payment payment, RefundMessage refundMessage) {
+        if (payment == null) {
+            log.warn("【退款消费者】支付记录不存在，跳过 - 挂号单号: {}", refundMessage.getRegistrationNo());
+            return false;
+        }
+        if (payment.getPaymentStatus() != PaymentStatus.REFUNDING) {
+            log.warn("【退款消费者】支付记录不是退款中状态，跳过 - 挂号单号: {}, 状态: {}",
+                    refundMessage.getRegistrationNo(), payment.getPaymentStatus());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 调用渠道退款（挂号单号作为渠道侧退款单号，超时后渠道可能仍会完成，由渠道按退款单号去重）
+     */
+    private CompletableFuture<Void> callGateway(RefundMessage refundMessage) {
+        CompletableFuture<Void> refund;
         try {
-            log.info("【退款消费者】收到退款消息 - 挂号单号: {}, 金额: {}",
-                    refundMessage.getRegistrationNo(), refundMessage.getAmount());
-
-            // 模拟调用第三方支付接口进行退款
-            processRefund(refundMessage);
-
-            // 更新支付记录状态为已退款
-            Payment payment = paymentMapper.selectByRegistrationId(refundMessage.getRegistrationId());
-            if (payment != null) {
-                Payment updatePayment = new Payment();
-                updatePayment.setId(payment.getId());
-                updatePayment.setPaymentStatus(PaymentStatus.REFUNDED);
-                updatePayment.setRefundTime(LocalDateTime.now());
-                updatePayment.setRemark("取消挂号退款");
-                paymentMapper.updateById(updatePayment);
-                //发送退款成功通知
-                payment=paymentMapper.selectById(payment.getId());
-                messageService.sendRefundSuccessNotice(payment);
-            }
+            refund = refundGatewayService.refund(refundMessage);
+        } catch (Exception e) {
+            refund = CompletableFuture.failedFuture(e);
+        }
+        return refund.orTimeout(refundConfig.getGatewayTimeoutSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 更新支付记录为已退款并发送通知
+     * 只有退款中的记录会被更新，并发的重复消息只有一条生效
+     */
+    private void markRefunded(RefundMessage refundMessage) {
+        Payment payment = paymentMapper.selectByRegistrationId(refundMessage.getRegistrationId());
+        if (payment == null) {
+            return;
+        }
+        LocalDateTime refundTime = LocalDateTime.now();
+        String remark = "取消挂号退款";
+        if (paymentMapper.markRefundedIfRefunding(payment.getId(), refundTime, remark) == 0) {
+            log.warn("【退款消费者】支付记录已不是退款中状态，不再更新 - 挂号单号: {}, 状态: {}",
+                    refundMessage.getRegistrationNo(), payment.getPaymentStatus());
+            return;
+        }
+        Payment updatePayment = new Payment();
+        updatePayment.setPaymentStatus(PaymentStatus.REFUNDED);
+        updatePayment.setRefundTime(refundTime);
+        updatePayment.setRemark(remark);
 
-            // 手动确认消息
-            channel.basicAck(deliveryTag, false);
+        // 发送退款成功通知（直接使用已更新的字段，不再回查）
+        payment.setPaymentStatus(updatePayment.getPaymentStatus());
+        payment.setRefundTime(updatePayment.getRefundTime());
+        payment.setRemark(updatePayment.getRemark());
+        messageService.sendRefundSuccessNotice(payment);
+    }
 
-            log.info("【退款消费者】退款处理成功 - 挂号单号: {}", refundMessage.getRegistrationNo());
+    /**
+     * 处理失败：未超过重试次数时投递到下一级延迟队列，否则标记退款失败并转入死信队列
+     * 渠道已退款时重试消息带上渠道已完成标记；重试耗尽时不标记退款失败，转入死信队列人工核对落库
+     * 两种情况均确认原消息，不再重新入队
+     */
+    private void handleFailure(RefundMessage refundMessage, Message message, Throwable cause,
+                               boolean gatewayDone, CompletableFuture<Void> result) {
+        log.error("【退款消费者】退款处理失败 - 挂号单号: {}, 错误: {}",
+                refundMessage.getRegistrationNo(), cause.getMessage(), cause);
+        // 已重试次数取自消息头，随重试消息一起传递
+        int attempt = getAttempt(message);
 
-        } catch (Exception e) {
-            log.error("【退款消费者】退款处理失败 - 挂号单号: {}, 错误: {}",
-                    refundMessage.getRegistrationNo(), e.getMessage(), e);
-            // 获取重试次数
-            Integer retryCount = getRetryCount(message);
-
-            if (retryCount >= MAX_RETRY_COUNT) {
-                // 超过最大重试次数，标记为退款失败
-                log.error("【退款消费者】超过最大重试次数，标记为退款失败 - 挂号单号: {}",
-                        refundMessage.getRegistrationNo());
-                markRefundFailed(refundMessage);
-                // 确认消息，不再重试
-                channel.basicAck(deliveryTag, false);
+        try {
+            if (attempt < refundConfig.getMaxRetries()) {
+                int tier = attempt + 1;
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REFUND_RETRY_EXCHANGE,
+                        RabbitMQConfig.refundRetryRoutingKey(tier), refundMessage, retryMessage -> {
+                            retryMessage.getMessageProperties().setHeader(RabbitMQConfig.REFUND_ATTEMPT_HEADER, tier);
+                            retryMessage.getMessageProperties().setHeader(RabbitMQConfig.REFUND_GATEWAY_DONE_HEADER, gatewayDone);
+                            return retryMessage;
+                        });
+                retryCounts[tier - 1].increment();
+                log.warn("【退款消费者】第 {} 次重试将在 {}ms 后进行 - 挂号单号: {}",
+                        tier, refundConfig.getRetryDelayMillis(tier), refundMessage.getRegistrationNo());
             } else {
-                // 拒绝消息，重新入队继续重试
-                log.warn("【退款消费者】第 {} 次重试失败，继续重试 - 挂号单号: {}",
-                        retryCount, refundMessage.getRegistrationNo());
-                channel.basicNack(deliveryTag, false, true);
+                if (gatewayDone) {
+                    // 渠道已退款，只是落库失败：不能标记退款失败（否则会被再次退款），转入死信队列人工核对
+                    log.error("【退款消费者】渠道已退款但落库重试耗尽，转入死信队列人工核对 - 挂号单号: {}",
+                            refundMessage.getRegistrationNo());
+                } else {
+                    // 超过最大重试次数，标记为退款失败并转入死信队列留待人工处理
+                    log.error("【退款消费者】超过最大重试次数，标记为退款失败 - 挂号单号: {}",
+                            refundMessage.getRegistrationNo());
+                    markRefundFailed(refundMessage);
+                }
+                rabbitTemplate.convertAndSend(RabbitMQConfig.REFUND_DLX_EXCHANGE,
+                        RabbitMQConfig.REFUND_DLX_ROUTING_KEY, refundMessage, parkedMessage -> {
+                            parkedMessage.getMessageProperties().setHeader(RabbitMQConfig.REFUND_ATTEMPT_HEADER, attempt);
+                            parkedMessage.getMessageProperties().setHeader(RabbitMQConfig.REFUND_GATEWAY_DONE_HEADER, gatewayDone);
+                            parkedMessage.getMessageProperties().setHeader("x-refund-error", String.valueOf(cause.getMessage()));
+                            return parkedMessage;
+                        });
+                failedCount.increment();
             }
+            result.complete(null);
+        } catch (Exception e) {
+            log.error("【退款消费者】重试投递失败，消息转入死信队列 - 挂号单号: {}, 错误: {}",
+                    refundMessage.getRegistrationNo(), e.getMessage());
+            result.completeExceptionally(e);
         }
     }
 
+    private void recordLatency(long millis) {
+        latencyTotalMillis.add(millis);
+        latencyMaxMillis.accumulateAndGet(millis, Math::max);
+    }
+
     /**
-     * 处理退款逻辑（模拟）
+     * 退款吞吐统计
      */
-    private void processRefund(RefundMessage refundMessage) {
-        // 模拟退款处理耗时
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    public Map<String, Object> getStats() {
+        long success = successCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("concurrency", refundConfig.getConcurrency());
+        stats.put("prefetch", refundConfig.getPrefetch());
+        stats.put("inFlight", inFlight.get());
+        stats.put("receivedCount", receivedCount.sum());
+        stats.put("successCount", success);
+        stats.put("failedCount", failedCount.sum());
+        stats.put("skippedCount", skippedCount.sum());
+        // 重试消息占比与broker重新投递占比
+        long received = receivedCount.sum();
+        stats.put("retriedDeliveryCount", retriedDeliveryCount.sum());
+        stats.put("redeliveredCount", redeliveredCount.sum());
+        stats.put("redeliveryRate", received == 0 ? 0D : (double) (retriedDeliveryCount.sum() + redeliveredCount.sum()) / received);
+        Map<String, Object> retries = new LinkedHashMap<>();
+        for (int tier = 1; tier <= retryCounts.length; tier++) {
+            Map<String, Object> tierStats = new LinkedHashMap<>();
+            tierStats.put("delayMillis", refundConfig.getRetryDelayMillis(tier));
+            tierStats.put("published", retryCounts[tier - 1].sum());
+            tierStats.put("depth", getQueueDepth(RabbitMQConfig.refundRetryQueue(tier)));
+            retries.put(String.valueOf(tier), tierStats);
         }
+        stats.put("retryTiers", retries);
+        stats.put("parkedDepth", getQueueDepth(RabbitMQConfig.REFUND_DLX_QUEUE));
+        stats.put("latencyAvgMillis", success == 0 ? 0 : latencyTotalMillis.sum() / success);
+        stats.put("latencyMaxMillis", latencyMaxMillis.get());
+        stats.put("workerQueued", refundExecutor.getQueue().size());
+        return stats;
+    }
 
-        // 模拟退款成功
-        log.info("【模拟退款】退款成功 - 挂号单号: {}, 退款金额: {} 元",
-                refundMessage.getRegistrationNo(), refundMessage.getAmount());
+    /**
+     * 获取消息已重试次数
+     * @param message 消息
+     * @return 已重试次数，首次投递为0
+     */
+    private int getAttempt(Message message) {
+        Object attempt = message.getMessageProperties().getHeader(RabbitMQConfig.REFUND_ATTEMPT_HEADER);
+        return attempt instanceof Number ? ((Number) attempt).intValue() : 0;
+    }
 
-        // TODO: 实际项目中，这里应该：
-        // 1. 调用微信/支付宝退款API
-        // 2. 发送退款成功通知给患者
+    /**
+     * 渠道是否已在之前的投递中退款成功
+     */
+    private boolean isGatewayDone(Message message) {
+        Object gatewayDone = message.getMessageProperties().getHeader(RabbitMQConfig.REFUND_GATEWAY_DONE_HEADER);
+        return Boolean.TRUE.equals(gatewayDone);
     }
 
     /**
-     * 获取消息重试次数
-     * @param message 消息
-     * @return 重试次数
+     * 查询队列积压消息数，查询失败时返回-1
      */
-    private Integer getRetryCount(Message message) {
-        Object retryCountObj = message.getMessageProperties().getHeader("x-retry-count");
-        if (retryCountObj == null) {
-            // 第一次消费，设置重试次数为1
-            message.getMessageProperties().setHeader("x-retry-count", 1);
-            return 1;
+    private long getQueueDepth(String queueName) {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+            return info != null ? info.getMessageCount() : -1;
+        } catch (Exception e) {
+            log.warn("查询队列积压失败 - 队列: {}, 错误: {}", queueName, e.getMessage());
+            return -1;
         }
-        Integer retryCount = (Integer) retryCountObj + 1;
-        message.getMessageProperties().setHeader("x-retry-count", retryCount);
-        return retryCount;
     }
 
     /**
@@ -0,0 +1,38 @@
+package com.hospital.registration.service;
+
+import com.hospital.registration.dto.BookingMessage;
+import com.hospital.registration.dto.RegistrationDTO;
+import com.hospital.registration.vo.app.BookingTicketVO;
+
+/**
+ * @title: BookingService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 异步挂号服务接口
+ */
+public interface BookingService {
+
+    /**
+     * 提交挂号：号源准入通过后投递到挂号队列，立即返回挂号凭证
+     * @param registrationDTO 挂号信息DTO
+     * @return 挂号凭证
+     */
+    BookingTicketVO submitBooking(RegistrationDTO registrationDTO);
+
+    /**
+     * 处理挂号消息：写入挂号记录和支付订单，并更新凭证状态
+     * 同一凭证只落库一次；数据库瞬时异常或凭证状态读写失败时投递到重试队列，凭证保持处理中；
+     * 重试耗尽时抛出异常
+     * @param bookingMessage 挂号消息
+     */
+    void processBooking(BookingMessage bookingMessage);
+
+    /**
+     * 查询挂号凭证
+     * @param ticketNo 凭证号
+     * @param patientId 当前患者ID
+     * @return 挂号凭证
+     */
+    BookingTicketVO getTicket(String ticketNo, Long patientId);
+}
@@ -63,9 +63,9 @@ public interface MedicalRecordService {
     List<MedicalRecordVO> getDoctorMedicalRecords(Long doctorId);
 
     /**
-     * 获取医生今日待诊列表
+     * 获取医生今日待诊列表（范围由当前登录身份的数据权限决定）
      */
-    List<RegistrationVO> getDoctorTodayPatients(Long userId);
+    List<RegistrationVO> getDoctorTodayPatients();
 
     /**
      * 开始接诊
@@ -78,7 +78,7 @@ public interface MedicalRecordService {
     MedicalRecordVO completeConsultation(MedicalRecordDTO medicalRecordDTO, Long userId);
 
     /**
-     * 分页查询医生历史病历
+     * 分页查询医生历史病历（范围由当前登录身份的数据权限决定）
      */
-    Page<MedicalRecordVO> getDoctorHistoryPage(MedicalRecordQueryDTO queryDTO, Long userId);
+    Page<MedicalRecordVO> getDoctorHistoryPage(MedicalRecordQueryDTO queryDTO);
 }
\ No newline at end of file
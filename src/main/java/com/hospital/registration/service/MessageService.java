@@ -25,6 +25,16 @@ public interface MessageService {
      */
     void sendRegistrationSuccessNotice(Registration registration, String departmentName, String doctorName);
 
+    /**
+     * 发送挂号成功通知（调用方已持有患者手机号，不再查询用户）
+     *
+     * @param registration   挂号记录
+     * @param patientPhone   患者手机号
+     * @param departmentName 科室名称
+     * @param doctorName     医生姓名
+     */
+    void sendRegistrationSuccessNotice(Registration registration, String patientPhone, String departmentName, String doctorName);
+
     /**
      * 发送支付成功通知
      *
@@ -42,6 +52,15 @@ public interface MessageService {
      */
     void sendRegistrationCancelNotice(Registration registration, String departmentName, String doctorName);
 
+    /**
+     * 批量发送挂号取消通知（同一排班停诊，一次查询患者、一次批量插入）
+     *
+     * @param registrations  挂号记录列表
+     * @param departmentName 科室名称
+     * @param doctorName     医生姓名
+     */
+    void batchSendRegistrationCancelNotice(List<Registration> registrations, String departmentName, String doctorName);
+
     /**
      * 发送退款成功通知
      *
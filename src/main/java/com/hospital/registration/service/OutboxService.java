@@ -0,0 +1,35 @@
+package com.hospital.registration.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @title: OutboxService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱服务
+ * 待发送消息与业务数据在同一事务中写入发件箱表，事务提交后由中继批量投递并等待发布确认
+ */
+public interface OutboxService {
+
+    /**
+     * 写入一条待发送消息
+     *
+     * @param exchange   交换机
+     * @param routingKey 路由键
+     * @param messageKey 业务键（用于排查，如挂号单号）
+     * @param payload    消息体
+     */
+    void enqueue(String exchange, String routingKey, String messageKey, Object payload);
+
+    /**
+     * 批量写入待发送消息（一次批量插入）
+     *
+     * @param exchange         交换机
+     * @param routingKey       路由键
+     * @param payloads         消息体列表
+     * @param messageKeyMapper 业务键提取函数
+     */
+    <T> void enqueueAll(String exchange, String routingKey, List<T> payloads, Function<T, String> messageKeyMapper);
+}
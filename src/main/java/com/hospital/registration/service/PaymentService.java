@@ -3,11 +3,12 @@ package com.hospital.registration.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hospital.registration.dto.PaymentDTO;
 import com.hospital.registration.dto.PaymentQueryDTO;
+import com.hospital.registration.entity.Registration;
 import com.hospital.registration.vo.PaymentVO;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @title: PaymentService
@@ -26,6 +27,13 @@ public interface PaymentService {
      */
     PaymentVO createPayment(PaymentDTO paymentDTO);
 
+    /**
+     * 为新建的挂号创建待支付订单（挂号流程内调用，直接使用内存中的挂号记录，不再查询校验）
+     * @param registration 已写入的挂号记录
+     * @param paymentMethod 支付方式
+     */
+    void createPendingPayment(Registration registration, String paymentMethod);
+
     /**
      * 处理支付回调（模拟）
      * @param transactionNo 交易流水号
@@ -33,6 +41,11 @@ public interface PaymentService {
      */
     boolean handlePaymentCallback(String transactionNo);
 
+    /**
+     * 支付回调统计（处理次数、重复回调次数、处理耗时）
+     */
+    Map<String, Object> getCallbackStats();
+
     /**
      * 根据挂号ID查询支付记录
      * @param registrationId 挂号ID
@@ -55,11 +68,18 @@ public interface PaymentService {
     List<PaymentVO> getUserPayments(Long userId);
 
     /**
-     * 异步退款
-     * @param registrationNo 挂号单号
-     * @param amount 退款金额
+     * 异步退款（退款消息写入发件箱，随调用方事务提交后投递）
+     * @param registration 已支付的挂号记录
+     */
+    void refundAsync(Registration registration);
+
+    /**
+     * 批量异步退款（排班停诊）
+     * 支付记录批量标记为退款中，退款消息批量写入发件箱
+     *
+     * @param registrations 已支付的挂号记录
      */
-    void refundAsync(String registrationNo, BigDecimal amount);
+    void refundBatchAsync(List<Registration> registrations);
 
     /**
      * 分页查询支付记录
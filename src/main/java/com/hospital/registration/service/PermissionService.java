@@ -1,5 +1,6 @@
 package com.hospital.registration.service;
 
+import com.hospital.registration.cache.PermissionCache;
 import com.hospital.registration.dto.AssignRoleDTO;
 import com.hospital.registration.dto.PermissionDTO;
 import com.hospital.registration.vo.PermissionVO;
@@ -110,6 +111,14 @@ public interface PermissionService {
      */
     boolean isSuperAdmin(Long userId);
 
+    /**
+     * 查询用户的角色编码、权限编码和是否超级管理员（走权限缓存）
+     *
+     * @param userId 用户ID
+     * @return 用户权限（不可变）
+     */
+    PermissionCache.UserAuthority getUserAuthority(Long userId);
+
     /**
      * 级联更新权限状态
      * 禁用时：同时禁用所有子权限
@@ -0,0 +1,18 @@
+package com.hospital.registration.service;
+
+/**
+ * @title: QueueNumberService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排队号分配服务接口
+ */
+public interface QueueNumberService {
+
+    /**
+     * 分配指定排班的下一个排队号（多节点下全局唯一、递增）
+     * @param scheduleId 排班ID
+     * @return 排队号
+     */
+    int nextQueueNumber(Long scheduleId);
+}
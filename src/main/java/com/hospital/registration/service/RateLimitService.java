@@ -0,0 +1,38 @@
+package com.hospital.registration.service;
+
+import java.util.Map;
+
+/**
+ * @title: RateLimitService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 限流服务接口（基于Redis令牌桶，多节点共享额度）
+ */
+public interface RateLimitService {
+
+    /**
+     * 按用户限流，超出时抛出TOO_MANY_REQUESTS
+     * @param userId 用户ID
+     */
+    void checkUser(Long userId);
+
+    /**
+     * 按IP限流，超出时抛出TOO_MANY_REQUESTS
+     * @param ip 客户端IP
+     */
+    void checkIp(String ip);
+
+    /**
+     * 尝试获取排班挂号令牌
+     * @param scheduleId 排班ID
+     * @return 是否获得令牌
+     */
+    boolean tryAcquireSchedule(Long scheduleId);
+
+    /**
+     * 各维度放行/拒绝计数
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,22 @@
+package com.hospital.registration.service;
+
+import com.hospital.registration.dto.RefundMessage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @title: RefundGatewayService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 支付渠道退款接口（异步调用，不占用消费者线程）
+ */
+public interface RefundGatewayService {
+
+    /**
+     * 发起退款
+     * @param refundMessage 退款消息
+     * @return 渠道受理完成时完成，渠道返回失败时异常完成
+     */
+    CompletableFuture<Void> refund(RefundMessage refundMessage);
+}
@@ -21,11 +21,23 @@ public interface RegistrationService {
      */
     RegistrationVO createRegistration(RegistrationDTO registrationDTO);
 
+    /**
+     * 为已通过号源准入的请求创建挂号（号源已在Redis中占用），同一凭证号只落库一次
+     */
+    RegistrationVO createAdmittedRegistration(RegistrationDTO registrationDTO, String bookingTicketNo);
+
     /**
      * 取消挂号
      */
     void cancelRegistration(Long id);
 
+    /**
+     * 批量取消排班下的全部有效挂号（医生停诊）
+     * @param scheduleId 排班ID
+     * @return 取消的挂号数
+     */
+    int cancelRegistrationsBySchedule(Long scheduleId);
+
     /**
      * 根据ID查询挂号详情
      */
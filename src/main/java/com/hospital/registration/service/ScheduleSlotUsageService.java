@@ -0,0 +1,51 @@
+package com.hospital.registration.service;
+
+import com.hospital.registration.common.TimeSlot;
+
+import java.time.LocalDate;
+
+/**
+ * @title: ScheduleSlotUsageService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班细分时段已预约数服务接口
+ */
+public interface ScheduleSlotUsageService {
+
+    /**
+     * 挂号成功：细分时段已预约数加一
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     */
+    void increase(Long scheduleId, String detailTimeSlot);
+
+    /**
+     * 取消挂号：细分时段已预约数减一
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     */
+    void decrease(Long scheduleId, String detailTimeSlot);
+
+    /**
+     * 查询排班下各细分时段的已预约数
+     * @param scheduleId 排班ID
+     * @param timeSlot 排班大时段
+     * @return 按细分时段序号（DetailTimeSlot.ordinal）排列的已预约数
+     */
+    short[] getBookedCounts(Long scheduleId, TimeSlot timeSlot);
+
+    /**
+     * 根据挂号记录重建指定排班的已预约数（只更新与实际不一致的细分时段）
+     * @param scheduleId 排班ID
+     * @return 校正的细分时段数
+     */
+    int rebuild(Long scheduleId);
+
+    /**
+     * 根据挂号记录修复指定日期及之后所有排班的已预约数（每个排班一个事务）
+     * @param startDate 开始日期
+     * @return 校正的细分时段数
+     */
+    int repair(LocalDate startDate);
+}
@@ -0,0 +1,53 @@
+package com.hospital.registration.service;
+
+/**
+ * @title: SlotInventoryService
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 号源库存服务接口（Redis内存库存，挂号准入在此原子判定）
+ */
+public interface SlotInventoryService {
+
+    /**
+     * 原子占用号源：同时校验排班剩余号源、细分时段容量、患者是否重复预约
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @param patientId 患者ID
+     * @throws com.hospital.registration.common.BusinessException 号源不足或重复预约时抛出
+     */
+    void acquire(Long scheduleId, String detailTimeSlot, Long patientId);
+
+    /**
+     * 释放号源（挂号失败回滚或取消挂号时调用）
+     * @param scheduleId 排班ID
+     * @param detailTimeSlot 细分时段编码
+     * @param patientId 患者ID
+     */
+    void release(Long scheduleId, String detailTimeSlot, Long patientId);
+
+    /**
+     * 从数据库预热指定排班的库存
+     * @param scheduleId 排班ID
+     * @param overwrite 是否覆盖已存在的库存（覆盖会丢弃已占用但尚未落库的号源，仅在排班本身变更后使用）
+     */
+    void warmUp(Long scheduleId, boolean overwrite);
+
+    /**
+     * 关闭指定排班的库存：立即拒绝新的准入（停诊批量取消前调用），库存清除后按数据库重新加载
+     * @param scheduleId 排班ID
+     */
+    void close(Long scheduleId);
+
+    /**
+     * 清除指定排班的库存，下次挂号时从数据库重新加载
+     * @param scheduleId 排班ID
+     */
+    void evict(Long scheduleId);
+
+    /**
+     * 与数据库对账：持有分布式锁，仅修正持续不一致且无挂号活动的排班
+     * @return 修正的排班数量
+     */
+    int reconcile();
+}
@@ -1,5 +1,7 @@
 package com.hospital.registration.service;
 
+import java.util.Map;
+
 /**
  * @title: TokenService
  * @author: Su
@@ -32,4 +34,10 @@ public interface TokenService {
      * @param isAdmin 是否管理端
      */
     void removeToken(Long userId, boolean isAdmin);
-}
\ No newline at end of file
+
+    /**
+     * 本地Token缓存命中率及吊销传播延迟统计
+     * @return 统计信息
+     */
+    Map<String, Object> getStats();
+}
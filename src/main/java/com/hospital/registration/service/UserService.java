@@ -127,5 +127,10 @@ public interface UserService {
      */
     void updateUserInfo(Long userId, String realName, String gender, String idCard);
 
+    /**
+     * 登录吞吐及各阶段耗时统计
+     */
+    Map<String, Object> getLoginStats();
+
 }
 
@@ -0,0 +1,268 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.config.BookingConfig;
+import com.hospital.registration.config.RabbitMQConfig;
+import com.hospital.registration.dto.BookingMessage;
+import com.hospital.registration.dto.RegistrationDTO;
+import com.hospital.registration.service.BookingService;
+import com.hospital.registration.service.RegistrationService;
+import com.hospital.registration.service.SlotInventoryService;
+import com.hospital.registration.vo.RegistrationVO;
+import com.hospital.registration.utils.IdGenerator;
+import com.hospital.registration.vo.app.BookingTicketVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @title: BookingServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 异步挂号服务实现类
+ * 请求线程只做号源准入和消息投递，挂号记录、支付订单、通知由消费者批量落库，凭证状态保存在Redis中供客户端轮询。
+ */
+@Slf4j
+@Service
+public class BookingServiceImpl implements BookingService {
+
+    private static final String TICKET_KEY_PREFIX = "booking:ticket:";
+    private static final String STATUS_PROCESSING = "PROCESSING";
+    private static final String STATUS_SUCCESS = "SUCCESS";
+    private static final String STATUS_FAILED = "FAILED";
+
+    private final RegistrationService registrationService;
+    private final SlotInventoryService slotInventoryService;
+    private final RabbitTemplate rabbitTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final BookingConfig bookingConfig;
+    private final IdGenerator idGenerator;
+
+    /**
+     * 构造器注入
+     */
+    public BookingServiceImpl(RegistrationService registrationService,
+                              SlotInventoryService slotInventoryService,
+                              RabbitTemplate rabbitTemplate,
+                              StringRedisTemplate redisTemplate,
+                              BookingConfig bookingConfig,
+                              IdGenerator idGenerator) {
+        this.registrationService = registrationService;
+        this.slotInventoryService = slotInventoryService;
+        this.rabbitTemplate = rabbitTemplate;
+        this.redisTemplate = redisTemplate;
+        this.bookingConfig = bookingConfig;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * 提交挂号
+     *
+     * @param registrationDTO 挂号信息DTO
+     * @return 挂号凭证(处理中)
+     * @throws BusinessException 号源不足、重复预约或投递失败时抛出异常
+     */
+    @Override
+    public BookingTicketVO submitBooking(RegistrationDTO registrationDTO) {
+        log.info("提交异步挂号 - 患者ID: {}, 排班ID: {}, 细分时段: {}",
+                registrationDTO.getPatientId(), registrationDTO.getScheduleId(), registrationDTO.getDetailTimeSlot());
+
+        // 1. 号源准入（Redis原子扣减）
+        slotInventoryService.acquire(registrationDTO.getScheduleId(),
+                registrationDTO.getDetailTimeSlot(), registrationDTO.getPatientId());
+
+        // 2. 写入处理中凭证（先于投递，避免消费者先完成时凭证被覆盖）
+        String ticketNo = generateTicketNo();
+        Map<String, String> ticket = new HashMap<>();
+        ticket.put("status", STATUS_PROCESSING);
+        ticket.put("patientId", String.valueOf(registrationDTO.getPatientId()));
+        saveTicket(ticketNo, ticket);
+
+        // 3. 投递挂号消息
+        BookingMessage bookingMessage = new BookingMessage();
+        bookingMessage.setTicketNo(ticketNo);
+        bookingMessage.setScheduleId(registrationDTO.getScheduleId());
+        bookingMessage.setPatientId(registrationDTO.getPatientId());
+        bookingMessage.setSymptom(registrationDTO.getSymptom());
+        bookingMessage.setDetailTimeSlot(registrationDTO.getDetailTimeSlot());
+        bookingMessage.setSubmitTime(System.currentTimeMillis());
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.BOOKING_EXCHANGE, RabbitMQConfig.BOOKING_ROUTING_KEY, bookingMessage);
+        } catch (Exception e) {
+            log.error("挂号消息投递失败 - 凭证号: {}, 错误: {}", ticketNo, e.getMessage());
+            slotInventoryService.release(registrationDTO.getScheduleId(),
+                    registrationDTO.getDetailTimeSlot(), registrationDTO.getPatientId());
+            redisTemplate.delete(TICKET_KEY_PREFIX + ticketNo);
+            throw new BusinessException(ResultCode.FAIL.getCode(), "挂号失败，请稍后重试");
+        }
+
+        log.info("异步挂号已受理 - 凭证号: {}", ticketNo);
+        BookingTicketVO ticketVO = new BookingTicketVO();
+        ticketVO.setTicketNo(ticketNo);
+        ticketVO.setStatus(STATUS_PROCESSING);
+        return ticketVO;
+    }
+
+    /**
+     * 处理挂号消息
+     * 业务失败不重试：释放号源，凭证标记为失败；数据库瞬时异常时保留号源，延迟后重试
+     * 凭证状态读写、号源释放等其他异常同样延迟后重试，重试耗尽时抛出，由消费者转入死信队列
+     *
+     * @param bookingMessage 挂号消息
+     */
+    @Override
+    public void processBooking(BookingMessage bookingMessage) {
+        try {
+            handleBooking(bookingMessage);
+        } catch (RuntimeException e) {
+            // 凭证仍为处理中，重新投递后按凭证号幂等落库
+            if (scheduleRetry(bookingMessage)) {
+                log.warn("异步挂号处理异常，稍后重试 - 凭证号: {}, 第 {} 次重试, 原因: {}",
+                        bookingMessage.getTicketNo(), bookingMessage.getAttempt(), e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 落库并更新凭证状态
+     */
+    private void handleBooking(BookingMessage bookingMessage) {
+        String ticketNo = bookingMessage.getTicketNo();
+        String key = TICKET_KEY_PREFIX + ticketNo;
+
+        // 消息重复投递时跳过已处理完成的凭证
+        Object status = redisTemplate.opsForHash().get(key, "status");
+        if (STATUS_SUCCESS.equals(status) || STATUS_FAILED.equals(status)) {
+            log.warn("挂号凭证已处理，跳过 - 凭证号: {}, 状态: {}", ticketNo, status);
+            return;
+        }
+
+        RegistrationDTO registrationDTO = new RegistrationDTO();
+        registrationDTO.setScheduleId(bookingMessage.getScheduleId());
+        registrationDTO.setPatientId(bookingMessage.getPatientId());
+        registrationDTO.setSymptom(bookingMessage.getSymptom());
+        registrationDTO.setDetailTimeSlot(bookingMessage.getDetailTimeSlot());
+
+        Map<String, String> ticket = new HashMap<>();
+        try {
+            RegistrationVO registrationVO = createAdmittedRegistration(registrationDTO, ticketNo);
+            ticket.put("status", STATUS_SUCCESS);
+            ticket.put("registrationId", String.valueOf(registrationVO.getId()));
+            ticket.put("registrationNo", registrationVO.getRegistrationNo());
+            log.info("异步挂号成功 - 凭证号: {}, 挂号单号: {}, 排队耗时: {}ms", ticketNo,
+                    registrationVO.getRegistrationNo(), System.currentTimeMillis() - bookingMessage.getSubmitTime());
+        } catch (Exception e) {
+            if (isTransient(e) && scheduleRetry(bookingMessage)) {
+                log.warn("异步挂号遇到数据库瞬时异常，稍后重试 - 凭证号: {}, 第 {} 次重试, 原因: {}",
+                        ticketNo, bookingMessage.getAttempt(), e.getMessage());
+                return;
+            }
+            // 确认失败后释放号源（释放操作幂等）
+            slotInventoryService.release(bookingMessage.getScheduleId(),
+                    bookingMessage.getDetailTimeSlot(), bookingMessage.getPatientId());
+            ticket.put("status", STATUS_FAILED);
+            ticket.put("message", e instanceof BusinessException ? e.getMessage() : "挂号失败，请稍后重试");
+            log.warn("异步挂号失败 - 凭证号: {}, 原因: {}", ticketNo, e.getMessage());
+        }
+        saveTicket(ticketNo, ticket);
+    }
+
+    /**
+     * 创建已准入挂号
+     * 同一凭证被并发重复投递时唯一索引冲突，再调用一次返回另一消费者已创建的挂号
+     */
+    private RegistrationVO createAdmittedRegistration(RegistrationDTO registrationDTO, String ticketNo) {
+        try {
+            return registrationService.createAdmittedRegistration(registrationDTO, ticketNo);
+        } catch (DuplicateKeyException e) {
+            log.warn("挂号凭证并发落库冲突，查询已创建的挂号 - 凭证号: {}", ticketNo);
+            return registrationService.createAdmittedRegistration(registrationDTO, ticketNo);
+        }
+    }
+
+    /**
+     * 是否为可重试的数据库异常（锁等待超时、死锁、连接失败等）
+     */
+    private boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * 投递到挂号重试队列，超过最大重试次数或投递失败时返回false
+     */
+    private boolean scheduleRetry(BookingMessage bookingMessage) {
+        int attempt = bookingMessage.getAttempt() == null ? 0 : bookingMessage.getAttempt();
+        if (attempt >= bookingConfig.getMaxRetries()) {
+            return false;
+        }
+        bookingMessage.setAttempt(attempt + 1);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.BOOKING_EXCHANGE, RabbitMQConfig.BOOKING_RETRY_ROUTING_KEY, bookingMessage);
+            return true;
+        } catch (Exception e) {
+            log.error("挂号重试消息投递失败 - 凭证号: {}, 错误: {}", bookingMessage.getTicketNo(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 查询挂号凭证
+     *
+     * @param ticketNo 凭证号
+     * @param patientId 当前患者ID
+     * @return 挂号凭证
+     * @throws BusinessException 凭证不存在或不属于当前患者时抛出异常
+     */
+    @Override
+    public BookingTicketVO getTicket(String ticketNo, Long patientId) {
+        Map<Object, Object> ticket = redisTemplate.opsForHash().entries(TICKET_KEY_PREFIX + ticketNo);
+        if (ticket.isEmpty()) {
+            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "挂号凭证不存在或已过期");
+        }
+        if (!String.valueOf(patientId).equals(ticket.get("patientId"))) {
+            throw new BusinessException(ResultCode.FORBIDDEN.getCode(), "无权查看该挂号凭证");
+        }
+
+        BookingTicketVO ticketVO = new BookingTicketVO();
+        ticketVO.setTicketNo(ticketNo);
+        ticketVO.setStatus((String) ticket.get("status"));
+        ticketVO.setRegistrationNo((String) ticket.get("registrationNo"));
+        ticketVO.setMessage((String) ticket.get("message"));
+        Object registrationId = ticket.get("registrationId");
+        if (registrationId != null) {
+            ticketVO.setRegistrationId(Long.valueOf((String) registrationId));
+        }
+        return ticketVO;
+    }
+
+    /**
+     * 保存凭证字段并刷新过期时间
+     */
+    private void saveTicket(String ticketNo, Map<String, String> fields) {
+        String key = TICKET_KEY_PREFIX + ticketNo;
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, Duration.ofMinutes(bookingConfig.getTicketTtlMinutes()));
+    }
+
+    /**
+     * 生成挂号凭证号
+     */
+    private String generateTicketNo() {
+        return idGenerator.nextNo("BK");
+    }
+}
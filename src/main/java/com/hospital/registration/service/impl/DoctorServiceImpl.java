@@ -8,6 +8,7 @@ import com.hospital.registration.dto.DoctorDTO;
 import com.hospital.registration.entity.Department;
 import com.hospital.registration.entity.Doctor;
 import com.hospital.registration.entity.User;
+import com.hospital.registration.event.PermissionChangedEvent;
 import com.hospital.registration.mapper.DepartmentMapper;
 import com.hospital.registration.mapper.DoctorMapper;
 import com.hospital.registration.mapper.UserMapper;
@@ -15,6 +16,7 @@ import com.hospital.registration.service.DoctorService;
 import com.hospital.registration.vo.DoctorVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -34,16 +36,19 @@ public class DoctorServiceImpl implements DoctorService {
     private final DoctorMapper doctorMapper;
     private final UserMapper userMapper;
     private final DepartmentMapper departmentMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 构造器注入
      */
     public DoctorServiceImpl(DoctorMapper doctorMapper,
                              UserMapper userMapper,
-                             DepartmentMapper departmentMapper) {
+                             DepartmentMapper departmentMapper,
+                             ApplicationEventPublisher eventPublisher) {
         this.doctorMapper = doctorMapper;
         this.userMapper = userMapper;
         this.departmentMapper = departmentMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -94,6 +99,8 @@ public class DoctorServiceImpl implements DoctorService {
         userMapper.updateById(user);
 
         log.info("医生新增成功 - ID: {}, 用户姓名: {}", doctor.getId(), user.getRealName());
+        // 医生绑定关系决定数据权限范围
+        eventPublisher.publishEvent(new PermissionChangedEvent(doctor.getUserId()));
 
         // 查询并返回完整的医生信息(包含关联的用户和科室信息)
         return doctorMapper.selectDetailById(doctor.getId());
@@ -140,6 +147,7 @@ public class DoctorServiceImpl implements DoctorService {
         }
 
         // 更新医生信息
+        Long oldUserId = doctor.getUserId();
         BeanUtils.copyProperties(doctorDTO, doctor);
         int result = doctorMapper.updateById(doctor);
         if (result <= 0) {
@@ -148,6 +156,10 @@ public class DoctorServiceImpl implements DoctorService {
         }
 
         log.info("医生更新成功 - ID: {}, 用户姓名: {}", id, user.getRealName());
+        eventPublisher.publishEvent(new PermissionChangedEvent(oldUserId));
+        if (!oldUserId.equals(doctor.getUserId())) {
+            eventPublisher.publishEvent(new PermissionChangedEvent(doctor.getUserId()));
+        }
 
         // 查询并返回完整的医生信息
         return doctorMapper.selectDetailById(id);
@@ -181,6 +193,7 @@ public class DoctorServiceImpl implements DoctorService {
         }
 
         log.info("医生删除成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(doctor.getUserId()));
     }
 
     /**
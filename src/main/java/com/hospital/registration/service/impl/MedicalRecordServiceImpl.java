@@ -13,7 +13,6 @@ import com.hospital.registration.mapper.DoctorMapper;
 import com.hospital.registration.mapper.MedicalRecordMapper;
 import com.hospital.registration.mapper.RegistrationMapper;
 import com.hospital.registration.service.MedicalRecordService;
-import com.hospital.registration.service.PermissionService;
 import com.hospital.registration.vo.MedicalRecordVO;
 import com.hospital.registration.vo.RegistrationVO;
 import lombok.extern.slf4j.Slf4j;
@@ -23,7 +22,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -40,16 +38,13 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     private final MedicalRecordMapper medicalRecordMapper;
     private final RegistrationMapper registrationMapper;
     private final DoctorMapper doctorMapper;
-    private final PermissionService permissionService;
 
     public MedicalRecordServiceImpl(MedicalRecordMapper medicalRecordMapper,
                                     RegistrationMapper registrationMapper,
-                                    DoctorMapper doctorMapper,
-                                    PermissionService permissionService) {
+                                    DoctorMapper doctorMapper) {
         this.medicalRecordMapper = medicalRecordMapper;
         this.registrationMapper = registrationMapper;
         this.doctorMapper = doctorMapper;
-        this.permissionService = permissionService;
     }
 
     /**
@@ -194,21 +189,11 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
      * 获取医生今日待诊列表
      */
     @Override
-    public List<RegistrationVO> getDoctorTodayPatients(Long userId) {
-        log.info("获取医生今日待诊列表 - 用户ID: {}", userId);
+    public List<RegistrationVO> getDoctorTodayPatients() {
+        log.info("获取医生今日待诊列表");
 
-        // 判断是否是管理员
-        if (permissionService.isSuperAdmin(userId)) {
-            // 管理员查看所有今日待诊
-            return registrationMapper.selectAllTodayPatients(LocalDate.now());
-        }
-        //根据userId查询doctorId
-        Doctor doctor = getDoctorByUserId(userId);
-        if (doctor == null) {
-            log.warn("未找到对应的医生信息 - 用户ID: {}", userId);
-            return new ArrayList<>();
-        }
-        return registrationMapper.selectDoctorTodayPatients(doctor.getId(), LocalDate.now());
+        // 数据权限（管理员全部、医生本人）由DataScopeHandler拼入SQL
+        return registrationMapper.selectTodayPatients(LocalDate.now());
     }
 
     /**
@@ -310,25 +295,12 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
      * 分页查询医生历史病历
      */
     @Override
-    public Page<MedicalRecordVO> getDoctorHistoryPage(MedicalRecordQueryDTO queryDTO, Long userId) {
-        log.info("分页查询医生历史病历 - 用户ID: {}", userId);
+    public Page<MedicalRecordVO> getDoctorHistoryPage(MedicalRecordQueryDTO queryDTO) {
+        log.info("分页查询医生历史病历");
 
         Page<MedicalRecordVO> page = new Page<>(queryDTO.getPageNum(), queryDTO.getPageSize());
-        // 判断是否是管理员
-        if (permissionService.isSuperAdmin(userId)) {
-            // 管理员查看所有病历，doctorId传null
-            return medicalRecordMapper.selectDoctorHistoryPage(page, null,
-                    queryDTO.getPatientName(), queryDTO.getDiagnosis(),
-                    queryDTO.getStartDate(), queryDTO.getEndDate());
-        }
-        // 根据userId获取doctorId
-        Doctor doctor = doctorMapper.selectByUserId(userId);
-        if (doctor == null) {
-            log.warn("未找到对应的医生信息 - 用户ID: {}", userId);
-            return new Page<>(queryDTO.getPageNum(), queryDTO.getPageSize());
-        }
-
-        return medicalRecordMapper.selectDoctorHistoryPage(page, doctor.getId(),
+        // 数据权限（管理员全部、医生本人）由DataScopeHandler拼入SQL
+        return medicalRecordMapper.selectDoctorHistoryPage(page, null,
                 queryDTO.getPatientName(), queryDTO.getDiagnosis(),
                 queryDTO.getStartDate(), queryDTO.getEndDate());
     }
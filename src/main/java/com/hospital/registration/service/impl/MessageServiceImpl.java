@@ -14,9 +14,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 /**
@@ -60,6 +65,14 @@ public class MessageServiceImpl implements MessageService {
             return;
         }
 
+        sendRegistrationSuccessNotice(registration, user.getPhone(), departmentName, doctorName);
+    }
+
+    /**
+     * 发送挂号成功通知（调用方已持有患者手机号，不再查询用户）
+     */
+    @Override
+    public void sendRegistrationSuccessNotice(Registration registration, String patientPhone, String departmentName, String doctorName) {
         Map<String, String> params = new HashMap<>();
         params.put("registrationNo", registration.getRegistrationNo());
         params.put("visitDate", registration.getRegistrationDate().toString());
@@ -69,7 +82,7 @@ public class MessageServiceImpl implements MessageService {
         params.put("queueNumber", String.valueOf(registration.getQueueNumber()));
         params.put("fee", String.format("%.2f", registration.getRegistrationFee()));
 
-        sendMessageByTemplate(user.getId(), user.getPhone(), "REG_SUCCESS", params);
+        sendMessageByTemplate(registration.getPatientId(), patientPhone, "REG_SUCCESS", params);
     }
 
 
@@ -116,6 +129,48 @@ public class MessageServiceImpl implements MessageService {
         sendMessageByTemplate(user.getId(), user.getPhone(), "REG_CANCEL", params);
     }
 
+    /**
+     * 批量发送挂号取消通知
+     */
+    @Override
+    public void batchSendRegistrationCancelNotice(List<Registration> registrations, String departmentName, String doctorName) {
+        if (registrations.isEmpty()) {
+            return;
+        }
+        log.info("批量发送挂号取消通知 - 数量: {}", registrations.size());
+
+        MessageTemplate template = getEnabledTemplate("REG_CANCEL");
+        if (template == null) {
+            return;
+        }
+
+        Set<Long> patientIds = new LinkedHashSet<>();
+        for (Registration registration : registrations) {
+            patientIds.add(registration.getPatientId());
+        }
+        Map<Long, User> users = userMapper.selectByIds(patientIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<MessageRecord> records = new ArrayList<>(registrations.size());
+        for (Registration registration : registrations) {
+            User user = users.get(registration.getPatientId());
+            if (user == null) {
+                log.warn("发送挂号取消通知失败：用户不存在 - 用户ID: {}", registration.getPatientId());
+                continue;
+            }
+            Map<String, String> params = new HashMap<>();
+            params.put("registrationNo", registration.getRegistrationNo());
+            params.put("visitDate", registration.getRegistrationDate().toString());
+            params.put("departmentName", departmentName);
+            params.put("doctorName", doctorName);
+            records.add(buildMessageRecord(template, user.getId(), user.getPhone(), params));
+        }
+        if (!records.isEmpty()) {
+            messageRecordMapper.batchInsert(records);
+        }
+        log.info("【消息发送】模板: REG_CANCEL, 批量发送: {}", records.size());
+    }
+
     /**
      * 发送退款成功通知
      */
@@ -360,12 +415,34 @@ public class MessageServiceImpl implements MessageService {
      * @param params 模板参数
      */
     private void sendMessageByTemplate(Long userId, String phone, String templateCode, Map<String, String> params) {
+        MessageTemplate template = getEnabledTemplate(templateCode);
+        if (template == null) {
+            return;
+        }
+
+        messageRecordMapper.insert(buildMessageRecord(template, userId, phone, params));
+
+        log.info("【消息发送】模板: {}, 接收人: {}", templateCode, phone);
+    }
+
+    /**
+     * 获取启用的消息模板
+     * @param templateCode 模板编码
+     * @return 消息模板，不存在或已禁用时返回null
+     */
+    private MessageTemplate getEnabledTemplate(String templateCode) {
         MessageTemplate template = messageTemplateMapper.selectByTemplateCode(templateCode);
         if (template == null || template.getStatus() != 1) {
             log.warn("消息模板不存在或已禁用 - 模板编码: {}", templateCode);
-            return;
+            return null;
         }
+        return template;
+    }
 
+    /**
+     * 根据模板构建消息记录
+     */
+    private MessageRecord buildMessageRecord(MessageTemplate template, Long userId, String phone, Map<String, String> params) {
         String title = parseTemplate(template.getTitleTemplate(), params);
         String content = parseTemplate(template.getContentTemplate(), params);
 
@@ -380,10 +457,7 @@ public class MessageServiceImpl implements MessageService {
         record.setSendStatus(SendStatus.SENT.getCode());
         record.setSendTime(LocalDateTime.now());
         record.setReadStatus(0);
-
-        messageRecordMapper.insert(record);
-
-        log.info("【消息发送】模板: {}, 接收人: {}", templateCode, phone);
+        return record;
     }
 
 }
@@ -0,0 +1,94 @@
+package com.hospital.registration.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.entity.MqOutbox;
+import com.hospital.registration.mapper.MqOutboxMapper;
+import com.hospital.registration.mq.OutboxRelay;
+import com.hospital.registration.service.OutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @title: OutboxServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 消息发件箱服务实现类
+ */
+@Slf4j
+@Service
+public class OutboxServiceImpl implements OutboxService {
+
+    private final MqOutboxMapper mqOutboxMapper;
+    private final OutboxRelay outboxRelay;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 构造器注入
+     */
+    public OutboxServiceImpl(MqOutboxMapper mqOutboxMapper, OutboxRelay outboxRelay, ObjectMapper objectMapper) {
+        this.mqOutboxMapper = mqOutboxMapper;
+        this.outboxRelay = outboxRelay;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 写入一条待发送消息
+     */
+    @Override
+    public void enqueue(String exchange, String routingKey, String messageKey, Object payload) {
+        enqueueAll(exchange, routingKey, List.of(payload), ignored -> messageKey);
+    }
+
+    /**
+     * 批量写入待发送消息
+     */
+    @Override
+    public <T> void enqueueAll(String exchange, String routingKey, List<T> payloads, Function<T, String> messageKeyMapper) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        List<MqOutbox> records = new ArrayList<>(payloads.size());
+        for (T payload : payloads) {
+            MqOutbox record = new MqOutbox();
+            record.setExchange(exchange);
+            record.setRoutingKey(routingKey);
+            record.setMessageKey(messageKeyMapper.apply(payload));
+            record.setPayloadType(payload.getClass().getName());
+            record.setPayload(toJson(payload));
+            records.add(record);
+        }
+        mqOutboxMapper.batchInsert(records);
+        log.debug("消息已写入发件箱 - 交换机: {}, 路由键: {}, 数量: {}", exchange, routingKey, records.size());
+
+        // 事务提交后立即唤醒中继，不必等待下一次轮询；回滚时消息随事务一起撤销
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxRelay.wakeUp();
+                }
+            });
+        } else {
+            outboxRelay.wakeUp();
+        }
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            log.error("消息序列化失败 - 类型: {}, 错误: {}", payload.getClass().getName(), e.getMessage());
+            throw new BusinessException(ResultCode.FAIL.getCode(), "消息序列化失败");
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.hospital.registration.service.impl;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hospital.registration.common.BusinessException;
 import com.hospital.registration.common.PaymentStatus;
+import com.hospital.registration.common.RegistrationStatus;
 import com.hospital.registration.common.ResultCode;
 import com.hospital.registration.config.RabbitMQConfig;
 import com.hospital.registration.dto.PaymentDTO;
@@ -10,22 +11,31 @@ import com.hospital.registration.dto.PaymentQueryDTO;
 import com.hospital.registration.dto.RefundMessage;
 import com.hospital.registration.entity.Payment;
 import com.hospital.registration.entity.Registration;
+import com.hospital.registration.event.PaymentPaidEvent;
 import com.hospital.registration.mapper.PaymentMapper;
 import com.hospital.registration.mapper.RegistrationMapper;
 import com.hospital.registration.service.MessageService;
+import com.hospital.registration.service.OutboxService;
 import com.hospital.registration.service.PaymentService;
+import com.hospital.registration.utils.IdGenerator;
 import com.hospital.registration.vo.PaymentVO;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
@@ -39,19 +49,32 @@ import java.util.stream.Collectors;
 @Service
 public class PaymentServiceImpl implements PaymentService {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxService outboxService;
     private final PaymentMapper paymentMapper;
     private final RegistrationMapper registrationMapper;
     private final MessageService messageService;
+    private final IdGenerator idGenerator;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public PaymentServiceImpl(RabbitTemplate rabbitTemplate,
+    // 支付回调统计
+    private final LongAdder callbackPaidCount = new LongAdder();
+    private final LongAdder callbackDuplicateCount = new LongAdder();
+    private final LongAdder callbackRejectedCount = new LongAdder();
+    private final LongAdder callbackTotalMicros = new LongAdder();
+    private final AtomicLong callbackMaxMicros = new AtomicLong();
+
+    public PaymentServiceImpl(OutboxService outboxService,
                               PaymentMapper paymentMapper,
                               RegistrationMapper registrationMapper,
-                              MessageService messageService) {
-        this.rabbitTemplate = rabbitTemplate;
+                              MessageService messageService,
+                              IdGenerator idGenerator,
+                              ApplicationEventPublisher eventPublisher) {
+        this.outboxService = outboxService;
         this.paymentMapper = paymentMapper;
         this.registrationMapper = registrationMapper;
         this.messageService = messageService;
+        this.idGenerator = idGenerator;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -85,6 +108,24 @@ public class PaymentServiceImpl implements PaymentService {
             throw new BusinessException(ResultCode.FAIL.getCode(), "该挂号已有支付记录");
         }
 
+        Payment payment = insertPendingPayment(registration, paymentDTO.getPaymentMethod());
+
+        // 转换为VO返回
+        return convertToVO(payment, registration);
+    }
+
+    /**
+     * 为新建的挂号创建待支付订单（挂号流程内调用，挂号记录已在内存中，不再重复查询校验）
+     */
+    @Override
+    public void createPendingPayment(Registration registration, String paymentMethod) {
+        insertPendingPayment(registration, paymentMethod);
+    }
+
+    /**
+     * 写入待支付记录
+     */
+    private Payment insertPendingPayment(Registration registration, String paymentMethod) {
         // 生成交易流水号
         String transactionNo = generateTransactionNo();
 
@@ -93,8 +134,8 @@ public class PaymentServiceImpl implements PaymentService {
         payment.setTransactionNo(transactionNo);
         payment.setRegistrationId(registration.getId());
         payment.setUserId(registration.getPatientId());
-        payment.setAmount(paymentDTO.getAmount());
-        payment.setPaymentMethod(paymentDTO.getPaymentMethod());
+        payment.setAmount(registration.getRegistrationFee());
+        payment.setPaymentMethod(paymentMethod);
         payment.setPaymentStatus(PaymentStatus.PENDING);
         payment.setRemark("挂号费支付");
 
@@ -104,57 +145,94 @@ public class PaymentServiceImpl implements PaymentService {
         }
 
         log.info("支付订单创建成功 - 交易流水号: {}", transactionNo);
-
-        // 转换为VO返回
-        return convertToVO(payment, registration);
+        return payment;
     }
 
     /**
      * 处理支付回调（模拟）
+     * 一条条件更新同时把待支付的订单和挂号记录置为已支付，支付成功通知在事务提交后异步发送；
+     * 只有更新未命中时才查询订单，区分订单不存在与网关重复回调
      */
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean handlePaymentCallback(String transactionNo) {
         log.info("处理支付回调 - 交易流水号: {}", transactionNo);
+        long startTime = System.nanoTime();
+        try {
+            if (paymentMapper.markPaidByTransactionNo(transactionNo) > 0) {
+                eventPublisher.publishEvent(new PaymentPaidEvent(transactionNo));
+                callbackPaidCount.increment();
+                log.info("支付回调处理成功 - 交易流水号: {}", transactionNo);
+                return true;
+            }
 
-        // 查询支付记录
-        Payment payment = paymentMapper.selectByTransactionNo(transactionNo);
-        if (payment == null) {
-            log.warn("支付记录不存在 - 交易流水号: {}", transactionNo);
+            // 未更新：订单不存在、已支付（网关重复回调）、挂号已取消或当前状态不允许支付
+            Payment payment = paymentMapper.selectByTransactionNo(transactionNo);
+            if (payment == null) {
+                log.warn("支付记录不存在 - 交易流水号: {}", transactionNo);
+                callbackRejectedCount.increment();
+                return false;
+            }
+            if (payment.getPaymentStatus() == PaymentStatus.PAID) {
+                log.warn("该订单已支付 - 交易流水号: {}", transactionNo);
+                callbackDuplicateCount.increment();
+                return true;
+            }
+            if (payment.getPaymentStatus() == PaymentStatus.PENDING) {
+                Registration registration = registrationMapper.selectById(payment.getRegistrationId());
+                if (registration == null || registration.getStatus() == RegistrationStatus.CANCELLED) {
+                    log.warn("挂号已取消，拒绝支付 - 交易流水号: {}, 挂号ID: {}", transactionNo, payment.getRegistrationId());
+                    callbackRejectedCount.increment();
+                    return false;
+                }
+            }
+            log.warn("当前支付状态不允许支付 - 交易流水号: {}, 状态: {}", transactionNo, payment.getPaymentStatus());
+            callbackRejectedCount.increment();
             return false;
+        } finally {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+            callbackTotalMicros.add(micros);
+            callbackMaxMicros.accumulateAndGet(micros, Math::max);
         }
+    }
 
-        // 检查支付状态
-        if (payment.getPaymentStatus() == PaymentStatus.PAID) {
-            log.warn("该订单已支付 - 交易流水号: {}", transactionNo);
-            return true;
-        }
-
-        // 更新支付记录状态
-        Payment updatePayment = new Payment();
-        updatePayment.setId(payment.getId());
-        updatePayment.setPaymentStatus(PaymentStatus.PAID);
-        updatePayment.setPaymentTime(LocalDateTime.now());
-
-        int result = paymentMapper.updateById(updatePayment);
-        if (result <= 0) {
-            log.error("更新支付状态失败 - 交易流水号: {}", transactionNo);
-            return false;
+    /**
+     * 支付成功后异步发送通知（事务提交后执行，不占用回调响应时间）
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPaymentPaid(PaymentPaidEvent event) {
+        try {
+            Payment payment = paymentMapper.selectByTransactionNo(event.getTransactionNo());
+            if (payment == null) {
+                return;
+            }
+            Registration registration = registrationMapper.selectById(payment.getRegistrationId());
+            if (registration == null) {
+                return;
+            }
+            messageService.sendPaymentSuccessNotice(payment, registration);
+        } catch (Exception e) {
+            log.error("发送支付成功通知失败 - 交易流水号: {}, 错误: {}", event.getTransactionNo(), e.getMessage(), e);
         }
+    }
 
-        // 更新挂号记录的支付状态
-        Registration registration = new Registration();
-        registration.setId(payment.getRegistrationId());
-        registration.setPaymentStatus(com.hospital.registration.common.PaymentStatus.PAID);
-        registration.setPaymentTime(LocalDateTime.now());
-
-        registrationMapper.updateById(registration);
-
-        // 发送支付成功通知
-        registration = registrationMapper.selectById(payment.getRegistrationId());
-        messageService.sendPaymentSuccessNotice(payment, registration);
-        log.info("支付回调处理成功 - 交易流水号: {}", transactionNo);
-        return true;
+    /**
+     * 支付回调统计
+     */
+    @Override
+    public Map<String, Object> getCallbackStats() {
+        long paid = callbackPaidCount.sum();
+        long duplicate = callbackDuplicateCount.sum();
+        long rejected = callbackRejectedCount.sum();
+        long total = paid + duplicate + rejected;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("paidCount", paid);
+        stats.put("duplicateCount", duplicate);
+        stats.put("rejectedCount", rejected);
+        stats.put("avgMicros", total == 0 ? 0 : callbackTotalMicros.sum() / total);
+        stats.put("maxMicros", callbackMaxMicros.get());
+        return stats;
     }
 
     /**
@@ -205,49 +283,63 @@ public class PaymentServiceImpl implements PaymentService {
 
     /**
      * 异步退款
-     * @param registrationNo 挂号单号
-     * @param amount 退款金额
+     * 支付记录更新为退款中，退款消息写入发件箱，两者随调用方事务一起提交，由发件箱中继投递
+     * @param registration 已支付的挂号记录
      */
     @Override
-    @Async
-    public void refundAsync(String registrationNo, BigDecimal amount) {
-        log.info("【异步退款】开始处理退款 - 挂号单号: {}, 退款金额: {}", registrationNo, amount);
+    public void refundAsync(Registration registration) {
+        log.info("【异步退款】发起退款 - 挂号单号: {}, 退款金额: {}",
+                registration.getRegistrationNo(), registration.getRegistrationFee());
+
+        //查询支付记录并更新为退款中
+        Payment payment = paymentMapper.selectByRegistrationId(registration.getId());
+        if (payment != null) {
+            Payment updatePayment = new Payment();
+            updatePayment.setId(payment.getId());
+            updatePayment.setPaymentStatus(PaymentStatus.REFUNDING);
+            paymentMapper.updateById(updatePayment);
+        }
 
-        try {
-            //查询挂号记录
-            Registration registration = registrationMapper.selectByRegistrationNo(registrationNo);
-            if (registration == null) {
-                log.error("【异步退款】挂号记录不存在 - 挂号单号: {}", registrationNo);
-                return;
-            }
-            //查询支付记录并更新为退款中
-            Payment payment = paymentMapper.selectByRegistrationId(registration.getId());
-            if(payment!=null){
-                Payment updatePayment = new Payment();
-                updatePayment.setId(payment.getId());
-                updatePayment.setPaymentStatus(PaymentStatus.REFUNDING);
-                paymentMapper.updateById(updatePayment);
-            }
-            // 构建退款消息
-            RefundMessage message = new RefundMessage();
-            message.setRegistrationId(registration.getId());
-            message.setRegistrationNo(registrationNo);
-            message.setAmount(amount);
-            message.setPatientId(registration.getPatientId());
-
-            // 发送到 RabbitMQ 队列
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.REFUND_EXCHANGE,
-                    RabbitMQConfig.REFUND_ROUTING_KEY,
-                    message
-            );
-
-            log.info("【异步退款】退款消息已发送到队列 - 挂号单号: {}", registrationNo);
+        RefundMessage message = buildRefundMessage(registration);
+        outboxService.enqueue(RabbitMQConfig.REFUND_EXCHANGE, RabbitMQConfig.REFUND_ROUTING_KEY,
+                message.getRegistrationNo(), message);
+        log.info("【异步退款】退款消息已写入发件箱 - 挂号单号: {}", registration.getRegistrationNo());
+    }
 
-        } catch (Exception e) {
-            log.error("【异步退款】发送退款消息失败 - 挂号单号: {}, 错误: {}",
-                    registrationNo, e.getMessage(), e);
+    /**
+     * 批量异步退款
+     */
+    @Override
+    public void refundBatchAsync(List<Registration> registrations) {
+        if (registrations.isEmpty()) {
+            return;
+        }
+        List<Long> registrationIds = new ArrayList<>(registrations.size());
+        List<RefundMessage> messages = new ArrayList<>(registrations.size());
+        for (Registration registration : registrations) {
+            registrationIds.add(registration.getId());
+            messages.add(buildRefundMessage(registration));
         }
+
+        // 支付记录批量更新为退款中
+        int updated = paymentMapper.markRefundingByRegistrationIds(registrationIds);
+        log.info("【批量退款】支付记录已标记为退款中 - 挂号数: {}, 支付记录数: {}", registrations.size(), updated);
+
+        // 退款消息批量写入发件箱，事务提交后由中继批量投递并等待发布确认
+        outboxService.enqueueAll(RabbitMQConfig.REFUND_EXCHANGE, RabbitMQConfig.REFUND_ROUTING_KEY,
+                messages, RefundMessage::getRegistrationNo);
+    }
+
+    /**
+     * 构建退款消息
+     */
+    private RefundMessage buildRefundMessage(Registration registration) {
+        RefundMessage message = new RefundMessage();
+        message.setRegistrationId(registration.getId());
+        message.setRegistrationNo(registration.getRegistrationNo());
+        message.setAmount(registration.getRegistrationFee());
+        message.setPatientId(registration.getPatientId());
+        return message;
     }
 
     /**
@@ -303,12 +395,10 @@ public class PaymentServiceImpl implements PaymentService {
 
     /**
      * 生成交易流水号
-     * 格式: PAY + yyyyMMddHHmmss + 4位随机数
+     * 格式: PAY + 雪花ID
      */
     private String generateTransactionNo() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        int random = (int) (Math.random() * 9000) + 1000;
-        return "PAY" + timestamp + random;
+        return idGenerator.nextNo("PAY");
     }
 
     /**
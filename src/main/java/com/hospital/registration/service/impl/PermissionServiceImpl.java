@@ -1,13 +1,18 @@
 package com.hospital.registration.service.impl;
 
+import com.hospital.registration.cache.PermissionCache;
+import com.hospital.registration.cache.PermissionHierarchy;
+import com.hospital.registration.cache.PermissionRequirementIndex;
+import com.hospital.registration.cache.RbacSnapshot;
 import com.hospital.registration.common.BusinessException;
 import com.hospital.registration.common.ResultCode;
 import com.hospital.registration.dto.AssignRoleDTO;
 import com.hospital.registration.dto.PermissionDTO;
+import com.hospital.registration.entity.Doctor;
 import com.hospital.registration.entity.Permission;
 import com.hospital.registration.entity.Role;
 import com.hospital.registration.entity.User;
-import com.hospital.registration.entity.UserRole;
+import com.hospital.registration.event.PermissionChangedEvent;
 import com.hospital.registration.mapper.PermissionMapper;
 import com.hospital.registration.mapper.UserMapper;
 import com.hospital.registration.mapper.UserRoleMapper;
@@ -17,11 +22,18 @@ import com.hospital.registration.vo.RoleVO;
 import com.hospital.registration.vo.UserRoleVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @title: PermissionServiceImpl
@@ -37,16 +49,31 @@ public class PermissionServiceImpl implements PermissionService {
     private final PermissionMapper permissionMapper;
     private final UserRoleMapper userRoleMapper;
     private final UserMapper userMapper;
+    private final PermissionCache permissionCache;
+    private final PermissionHierarchy permissionHierarchy;
+    private final PermissionRequirementIndex permissionRequirementIndex;
+    private final RbacSnapshot rbacSnapshot;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 构造器注入
      */
     public PermissionServiceImpl(PermissionMapper permissionMapper,
                                  UserRoleMapper userRoleMapper,
-                                 UserMapper userMapper) {
+                                 UserMapper userMapper,
+                                 PermissionCache permissionCache,
+                                 PermissionHierarchy permissionHierarchy,
+                                 PermissionRequirementIndex permissionRequirementIndex,
+                                 RbacSnapshot rbacSnapshot,
+                                 ApplicationEventPublisher eventPublisher) {
         this.permissionMapper = permissionMapper;
         this.userRoleMapper = userRoleMapper;
         this.userMapper = userMapper;
+        this.permissionCache = permissionCache;
+        this.permissionHierarchy = permissionHierarchy;
+        this.permissionRequirementIndex = permissionRequirementIndex;
+        this.rbacSnapshot = rbacSnapshot;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -60,7 +87,7 @@ public class PermissionServiceImpl implements PermissionService {
         List<PermissionVO> allPermissions = getAllPermissions();
 
         // 构建树形结构
-        return buildTree(allPermissions, 0L);
+        return buildTree(allPermissions);
     }
 
     /**
@@ -70,8 +97,8 @@ public class PermissionServiceImpl implements PermissionService {
     public List<PermissionVO> getAllPermissions() {
         log.info("查询所有权限列表");
 
-        List<Permission> permissions = permissionMapper.selectAllPermissions();
-        List<PermissionVO> voList = new ArrayList<>();
+        List<Permission> permissions = permissionHierarchy.getAll();
+        List<PermissionVO> voList = new ArrayList<>(permissions.size());
         for (Permission permission : permissions) {
             voList.add(convertToVO(permission));
         }
@@ -127,6 +154,7 @@ public class PermissionServiceImpl implements PermissionService {
         }
 
         log.info("创建权限成功 - ID: {}, 权限编码: {}", permission.getId(), permission.getPermissionCode());
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
         return convertToVO(permission);
     }
 
@@ -164,6 +192,7 @@ public class PermissionServiceImpl implements PermissionService {
         }
 
         log.info("修改权限成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
         return getPermissionById(id);
     }
 
@@ -198,6 +227,7 @@ public class PermissionServiceImpl implements PermissionService {
         }
 
         log.info("删除权限成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -215,49 +245,22 @@ public class PermissionServiceImpl implements PermissionService {
             throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "权限不存在");
         }
 
-        List<Long> idsToUpdate = new ArrayList<>();
+        Set<Long> idsToUpdate = new LinkedHashSet<>();
         idsToUpdate.add(id);
 
         if (status == 0) {
-            // 禁用时：递归收集所有子权限ID
-            collectAllChildrenIds(id, idsToUpdate);
+            // 禁用时：收集所有子权限ID
+            permissionHierarchy.collectDescendantIds(id, idsToUpdate);
             log.info("禁用权限及其子权限 - 共 {} 个", idsToUpdate.size());
         } else {
-            // 启用时：递归收集所有父权限ID
-            collectAllParentIds(id, idsToUpdate);
+            // 启用时：收集所有父权限ID
+            permissionHierarchy.collectAncestorIds(id, idsToUpdate);
             log.info("启用权限及其父权限 - 共 {} 个", idsToUpdate.size());
         }
 
         // 批量更新状态
-        permissionMapper.batchUpdateStatus(idsToUpdate, status);
-    }
-
-    /**
-     * 递归收集所有子权限ID
-     */
-    private void collectAllChildrenIds(Long parentId, List<Long> result) {
-        List<Long> childrenIds = permissionMapper.selectDirectChildrenIds(parentId);
-        if (childrenIds != null && !childrenIds.isEmpty()) {
-            for (Long childId : childrenIds) {
-                if (!result.contains(childId)) {
-                    result.add(childId);
-                    // 递归查询子权限的子权限
-                    collectAllChildrenIds(childId, result);
-                }
-            }
-        }
-    }
-
-    /**
-     * 递归收集所有父权限ID
-     */
-    private void collectAllParentIds(Long id, List<Long> result) {
-        Long parentId = permissionMapper.selectParentIdById(id);
-        if (parentId != null && parentId != 0 && !result.contains(parentId)) {
-            result.add(parentId);
-            // 递归查询父权限的父权限
-            collectAllParentIds(parentId, result);
-        }
+        permissionMapper.batchUpdateStatus(new ArrayList<>(idsToUpdate), status);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -273,24 +276,23 @@ public class PermissionServiceImpl implements PermissionService {
         }
 
         // 收集所有需要更新的ID（包括级联的）
-        List<Long> allIdsToUpdate = new ArrayList<>();
+        Set<Long> allIdsToUpdate = new LinkedHashSet<>();
 
         for (Long id : ids) {
-            if (!allIdsToUpdate.contains(id)) {
-                allIdsToUpdate.add(id);
-            }
+            allIdsToUpdate.add(id);
 
             if (status == 0) {
                 // 禁用时：收集所有子权限
-                collectAllChildrenIds(id, allIdsToUpdate);
+                permissionHierarchy.collectDescendantIds(id, allIdsToUpdate);
             } else {
                 // 启用时：收集所有父权限
-                collectAllParentIds(id, allIdsToUpdate);
+                permissionHierarchy.collectAncestorIds(id, allIdsToUpdate);
             }
         }
 
         log.info("批量更新权限状态 - 实际更新 {} 个权限", allIdsToUpdate.size());
-        permissionMapper.batchUpdateStatus(allIdsToUpdate, status);
+        permissionMapper.batchUpdateStatus(new ArrayList<>(allIdsToUpdate), status);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -310,6 +312,7 @@ public class PermissionServiceImpl implements PermissionService {
         updatePermission.setId(id);
         updatePermission.setStatus(status);
         permissionMapper.updateById(updatePermission);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -328,18 +331,29 @@ public class PermissionServiceImpl implements PermissionService {
             throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "用户不存在");
         }
 
-        // 先删除原有的用户角色关联
-        userRoleMapper.deleteByUserId(userId);
-
-        // 批量插入新的用户角色关联
-        for (Long roleId : assignRoleDTO.getRoleIds()) {
-            UserRole userRole = new UserRole();
-            userRole.setUserId(userId);
-            userRole.setRoleId(roleId);
-            userRoleMapper.insert(userRole);
+        // 与现有关联比对，只删除移除项、只插入新增项
+        Set<Long> targetIds = new LinkedHashSet<>(assignRoleDTO.getRoleIds());
+        Set<Long> currentIds = new HashSet<>(userRoleMapper.selectRoleIdsByUserId(userId));
+        List<Long> removedIds = new ArrayList<>();
+        for (Long roleId : currentIds) {
+            if (!targetIds.contains(roleId)) {
+                removedIds.add(roleId);
+            }
+        }
+        targetIds.removeAll(currentIds);
+        if (removedIds.isEmpty() && targetIds.isEmpty()) {
+            log.info("用户角色未变化 - 用户ID: {}", userId);
+            return;
+        }
+        if (!removedIds.isEmpty()) {
+            userRoleMapper.deleteByUserIdAndRoleIds(userId, removedIds);
+        }
+        if (!targetIds.isEmpty()) {
+            userRoleMapper.batchInsert(userId, targetIds);
         }
 
         log.info("为用户分配角色成功 - 用户ID: {}", userId);
+        eventPublisher.publishEvent(new PermissionChangedEvent(userId));
     }
 
     /**
@@ -360,8 +374,8 @@ public class PermissionServiceImpl implements PermissionService {
         userRoleVO.setUsername(user.getUsername());
         userRoleVO.setRealName(user.getRealName());
 
-        // 查询用户的角色列表
-        List<Role> roles = userRoleMapper.selectRolesByUserId(userId);
+        // 从RBAC快照读取用户的角色列表
+        List<Role> roles = rbacSnapshot.get().getRoles(userId);
         List<RoleVO> roleVOs = new ArrayList<>();
         for (Role role : roles) {
             RoleVO roleVO = new RoleVO();
@@ -383,14 +397,7 @@ public class PermissionServiceImpl implements PermissionService {
     @Override
     public List<String> getUserPermissionCodes(Long userId) {
         log.info("查询用户权限编码列表 - 用户ID: {}", userId);
-
-        List<Permission> permissions = permissionMapper.selectByUserId(userId);
-        List<String> codes = new ArrayList<>();
-        for (Permission permission : permissions) {
-            codes.add(permission.getPermissionCode());
-        }
-
-        return codes;
+        return rbacSnapshot.get().getPermissionCodes(userId);
     }
 
     /**
@@ -398,10 +405,8 @@ public class PermissionServiceImpl implements PermissionService {
      */
     @Override
     public boolean hasPermission(Long userId, String permissionCode) {
-        log.info("检查用户权限 - 用户ID: {}, 权限编码: {}", userId, permissionCode);
-
-        List<String> permissionCodes = getUserPermissionCodes(userId);
-        return permissionCodes.contains(permissionCode);
+        log.debug("检查用户权限 - 用户ID: {}, 权限编码: {}", userId, permissionCode);
+        return permissionCache.get(userId, this::loadAuthority).getPermissionCodes().contains(permissionCode);
     }
 
     /**
@@ -409,26 +414,58 @@ public class PermissionServiceImpl implements PermissionService {
      */
     @Override
     public boolean isSuperAdmin(Long userId) {
-        // 查询用户的角色编码，判断是否包含 ADMIN
-        List<String> roleCodes = userRoleMapper.selectRoleCodesByUserId(userId);
-        return roleCodes.contains("ADMIN")|| roleCodes.contains("SUPER_ADMIN");
+        return permissionCache.get(userId, this::loadAuthority).isSuperAdmin();
+    }
+
+    /**
+     * 查询用户的角色、权限（走缓存）
+     */
+    @Override
+    public PermissionCache.UserAuthority getUserAuthority(Long userId) {
+        return permissionCache.get(userId, this::loadAuthority);
     }
 
     /**
-     * 构建权限树
+     * 从RBAC快照计算用户权限（权限编码集合 + 是否超级管理员 + 数据权限范围），不访问数据库
+     */
+    private PermissionCache.UserAuthority loadAuthority(Long userId) {
+        RbacSnapshot.Snapshot snapshot = rbacSnapshot.get();
+        // 用户的角色编码，判断是否包含 ADMIN
+        List<String> roleCodes = snapshot.getRoleCodes(userId);
+        boolean superAdmin = roleCodes.contains("ADMIN") || roleCodes.contains("SUPER_ADMIN");
+
+        Set<String> codes = new HashSet<>(snapshot.getPermissionCodes(userId));
+
+        // 数据权限范围：绑定医生的用户只能看到本人/本科室数据
+        Doctor doctor = snapshot.getDoctor(userId);
+        return new PermissionCache.UserAuthority(List.copyOf(roleCodes), Collections.unmodifiableSet(codes),
+                permissionRequirementIndex.toBits(codes), superAdmin,
+                doctor != null ? doctor.getId() : null, doctor != null ? doctor.getDepartmentId() : null);
+    }
+
+    /**
+     * 构建权限树（两次遍历，按原有排序挂载到父节点，父节点不存在的权限不出现在树中）
      *
      * @param allPermissions 所有权限列表
-     * @param parentId       父权限ID
      * @return 树形权限列表
      */
-    private List<PermissionVO> buildTree(List<PermissionVO> allPermissions, Long parentId) {
-        List<PermissionVO> tree = new ArrayList<>();
+    private List<PermissionVO> buildTree(List<PermissionVO> allPermissions) {
+        Map<Long, PermissionVO> byId = new HashMap<>(allPermissions.size() * 2);
+        for (PermissionVO permission : allPermissions) {
+            permission.setChildren(new ArrayList<>());
+            byId.put(permission.getId(), permission);
+        }
 
+        List<PermissionVO> tree = new ArrayList<>();
         for (PermissionVO permission : allPermissions) {
-            if (permission.getParentId().equals(parentId)) {
-                // 递归查找子权限
-                permission.setChildren(buildTree(allPermissions, permission.getId()));
+            Long parentId = permission.getParentId();
+            if (parentId == null || parentId == 0) {
                 tree.add(permission);
+                continue;
+            }
+            PermissionVO parent = byId.get(parentId);
+            if (parent != null) {
+                parent.getChildren().add(permission);
             }
         }
 
@@ -0,0 +1,90 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.mapper.RegistrationMapper;
+import com.hospital.registration.service.QueueNumberService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+
+/**
+ * @title: QueueNumberServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排队号分配服务实现类
+ * 每个排班一个Redis计数器，INCR分配排队号；计数器不存在时用数据库当前最大排队号加安全余量初始化（只在首次分配时查询一次）。
+ * 计数器丢失（Redis故障切换、被清空）时，已分配但事务未提交的排队号在数据库中不可见，余量保证重新初始化后不与其重复。
+ */
+@Slf4j
+@Service
+public class QueueNumberServiceImpl implements QueueNumberService {
+
+    private static final String QUEUE_NUMBER_KEY_PREFIX = "queue:number:";
+    // 计数器闲置过期时间(秒)，每次分配时刷新
+    private static final long KEY_TTL_SECONDS = 2 * 24 * 3600L;
+    // 初始化安全余量：覆盖计数器丢失时仍在事务中、数据库尚不可见的排队号（代价是排队号出现一段空号）
+    static final int SEED_MARGIN = 20;
+
+    /**
+     * 计数器存在时自增，否则返回-1
+     */
+    private static final DefaultRedisScript<Long> INCR_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n" +
+            "local n = redis.call('INCR', KEYS[1])\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "return n",
+            Long.class);
+
+    /**
+     * 计数器不存在时以数据库最大排队号加余量初始化（并发初始化时只有第一个生效），然后自增
+     */
+    private static final DefaultRedisScript<Long> SEED_AND_INCR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[2], 'NX')\n" +
+            "local n = redis.call('INCR', KEYS[1])\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "return n",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RegistrationMapper registrationMapper;
+
+    /**
+     * 构造器注入
+     */
+    public QueueNumberServiceImpl(StringRedisTemplate redisTemplate, RegistrationMapper registrationMapper) {
+        this.redisTemplate = redisTemplate;
+        this.registrationMapper = registrationMapper;
+    }
+
+    /**
+     * 分配下一个排队号
+     *
+     * @param scheduleId 排班ID
+     * @return 排队号
+     * @throws BusinessException 分配失败时抛出异常
+     */
+    @Override
+    public int nextQueueNumber(Long scheduleId) {
+        String key = QUEUE_NUMBER_KEY_PREFIX + scheduleId;
+        String ttl = String.valueOf(KEY_TTL_SECONDS);
+
+        Long number = redisTemplate.execute(INCR_SCRIPT, Collections.singletonList(key), ttl);
+        if (number != null && number < 0) {
+            Integer maxQueueNumber = registrationMapper.selectMaxQueueNumber(scheduleId);
+            // 首次分配（数据库无排队号）从1开始，否则跳过余量内可能已分配未提交的排队号
+            String seed = String.valueOf(maxQueueNumber == null || maxQueueNumber == 0 ? 0 : maxQueueNumber + SEED_MARGIN);
+            number = redisTemplate.execute(SEED_AND_INCR_SCRIPT, Collections.singletonList(key), ttl, seed);
+            log.info("排队号计数器初始化 - 排班ID: {}, 初始值: {}", scheduleId, seed);
+        }
+        if (number == null || number <= 0) {
+            log.error("排队号分配失败 - 排班ID: {}", scheduleId);
+            throw new BusinessException(ResultCode.FAIL.getCode(), "排队号分配失败，请稍后重试");
+        }
+        return number.intValue();
+    }
+}
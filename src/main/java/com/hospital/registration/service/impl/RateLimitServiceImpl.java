@@ -0,0 +1,152 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.config.RateLimitConfig;
+import com.hospital.registration.service.RateLimitService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @title: RateLimitServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 限流服务实现类
+ * 每个限流对象在Redis中对应一个Hash（令牌数、上次补充时间），由Lua脚本按Redis服务器时间补充并扣减，一次往返完成判定。
+ * Redis不可用时放行，限流不应成为挂号的单点故障。
+ */
+@Slf4j
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+
+    private static final String KEY_PREFIX = "rate:limit:";
+    private static final String DIMENSION_USER = "user";
+    private static final String DIMENSION_IP = "ip";
+    private static final String DIMENSION_SCHEDULE = "schedule";
+
+    /**
+     * 令牌桶
+     * KEYS[1]=桶Key; ARGV[1]=容量, ARGV[2]=每秒补充令牌数
+     * 返回1放行，0拒绝
+     */
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local capacity = tonumber(ARGV[1])\n" +
+            "local rate = tonumber(ARGV[2])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(bucket[1]) or capacity\n" +
+            "local ts = tonumber(bucket[2]) or now\n" +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)\n" +
+            "local allowed = 0\n" +
+            "if tokens >= 1 then tokens = tokens - 1 allowed = 1 end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)\n" +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)\n" +
+            "return allowed",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimitConfig rateLimitConfig;
+
+    // 各维度放行/拒绝计数
+    private final Map<String, LongAdder> admittedCounters = new LinkedHashMap<>();
+    private final Map<String, LongAdder> rejectedCounters = new LinkedHashMap<>();
+
+    /**
+     * 构造器注入
+     */
+    public RateLimitServiceImpl(StringRedisTemplate redisTemplate, RateLimitConfig rateLimitConfig) {
+        this.redisTemplate = redisTemplate;
+        this.rateLimitConfig = rateLimitConfig;
+        for (String dimension : new String[]{DIMENSION_USER, DIMENSION_IP, DIMENSION_SCHEDULE}) {
+            admittedCounters.put(dimension, new LongAdder());
+            rejectedCounters.put(dimension, new LongAdder());
+        }
+    }
+
+    /**
+     * 按用户限流
+     */
+    @Override
+    public void checkUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (!tryAcquire(DIMENSION_USER, String.valueOf(userId),
+                rateLimitConfig.getUserCapacity(), rateLimitConfig.getUserRate())) {
+            log.warn("用户请求过于频繁 - 用户ID: {}", userId);
+            throw new BusinessException(ResultCode.TOO_MANY_REQUESTS.getCode(), "操作过于频繁，请稍后再试");
+        }
+    }
+
+    /**
+     * 按IP限流
+     */
+    @Override
+    public void checkIp(String ip) {
+        if (ip == null) {
+            return;
+        }
+        if (!tryAcquire(DIMENSION_IP, ip, rateLimitConfig.getIpCapacity(), rateLimitConfig.getIpRate())) {
+            log.warn("IP请求过于频繁 - IP: {}", ip);
+            throw new BusinessException(ResultCode.TOO_MANY_REQUESTS.getCode(), "访问过于频繁，请稍后再试");
+        }
+    }
+
+    /**
+     * 尝试获取排班挂号令牌
+     */
+    @Override
+    public boolean tryAcquireSchedule(Long scheduleId) {
+        if (scheduleId == null) {
+            return true;
+        }
+        return tryAcquire(DIMENSION_SCHEDULE, String.valueOf(scheduleId),
+                rateLimitConfig.getScheduleCapacity(), rateLimitConfig.getScheduleRate());
+    }
+
+    /**
+     * 各维度放行/拒绝计数
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", rateLimitConfig.getEnabled());
+        for (String dimension : admittedCounters.keySet()) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            counts.put("admitted", admittedCounters.get(dimension).sum());
+            counts.put("rejected", rejectedCounters.get(dimension).sum());
+            stats.put(dimension, counts);
+        }
+        return stats;
+    }
+
+    /**
+     * 执行令牌桶脚本并计数
+     */
+    private boolean tryAcquire(String dimension, String id, Integer capacity, Double rate) {
+        if (!Boolean.TRUE.equals(rateLimitConfig.getEnabled())) {
+            return true;
+        }
+        boolean allowed;
+        try {
+            Long result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    Collections.singletonList(KEY_PREFIX + dimension + ":" + id),
+                    String.valueOf(capacity), String.valueOf(rate));
+            allowed = result == null || result == 1L;
+        } catch (Exception e) {
+            log.error("限流判定失败，放行请求 - 维度: {}, 对象: {}, 错误: {}", dimension, id, e.getMessage());
+            allowed = true;
+        }
+        (allowed ? admittedCounters : rejectedCounters).get(dimension).increment();
+        return allowed;
+    }
+}
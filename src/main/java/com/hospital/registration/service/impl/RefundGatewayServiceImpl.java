@@ -0,0 +1,43 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.config.RefundConfig;
+import com.hospital.registration.dto.RefundMessage;
+import com.hospital.registration.service.RefundGatewayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @title: RefundGatewayServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 支付渠道退款接口实现（模拟）
+ * 以定时完成的Future模拟渠道耗时，等待期间不占用任何线程；接入微信/支付宝时替换为其异步客户端。
+ */
+@Slf4j
+@Service
+public class RefundGatewayServiceImpl implements RefundGatewayService {
+
+    private final RefundConfig refundConfig;
+
+    /**
+     * 构造器注入
+     */
+    public RefundGatewayServiceImpl(RefundConfig refundConfig) {
+        this.refundConfig = refundConfig;
+    }
+
+    /**
+     * 发起退款（模拟）
+     */
+    @Override
+    public CompletableFuture<Void> refund(RefundMessage refundMessage) {
+        return CompletableFuture.runAsync(
+                () -> log.info("【模拟退款】退款成功 - 挂号单号: {}, 退款金额: {} 元",
+                        refundMessage.getRegistrationNo(), refundMessage.getAmount()),
+                CompletableFuture.delayedExecutor(refundConfig.getStubLatencyMillis(), TimeUnit.MILLISECONDS));
+    }
+}
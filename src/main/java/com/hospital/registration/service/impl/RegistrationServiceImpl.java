@@ -2,31 +2,42 @@ package com.hospital.registration.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.DetailTimeSlot;
 import com.hospital.registration.common.PaymentStatus;
 import com.hospital.registration.common.RegistrationStatus;
 import com.hospital.registration.common.ResultCode;
-import com.hospital.registration.dto.PaymentDTO;
+import com.hospital.registration.dto.BookingContext;
 import com.hospital.registration.dto.RegistrationDTO;
 import com.hospital.registration.entity.Registration;
 import com.hospital.registration.entity.User;
+import com.hospital.registration.event.ScheduleAvailabilityChangedEvent;
+import com.hospital.registration.event.ScheduleSuspendedEvent;
+import com.hospital.registration.event.SlotInventoryEvictEvent;
 import com.hospital.registration.mapper.RegistrationMapper;
 import com.hospital.registration.mapper.ScheduleMapper;
 import com.hospital.registration.mapper.UserMapper;
 import com.hospital.registration.service.MessageService;
 import com.hospital.registration.service.PaymentService;
+import com.hospital.registration.service.QueueNumberService;
 import com.hospital.registration.service.RegistrationService;
+import com.hospital.registration.service.ScheduleSlotUsageService;
+import com.hospital.registration.service.SlotInventoryService;
+import com.hospital.registration.utils.IdGenerator;
 import com.hospital.registration.vo.RegistrationVO;
 import com.hospital.registration.vo.ScheduleVO;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @title: RegistrationServiceImpl
@@ -44,6 +55,11 @@ public class RegistrationServiceImpl implements RegistrationService {
     private final UserMapper userMapper;
     private final PaymentService paymentService;
     private final MessageService messageService;
+    private final SlotInventoryService slotInventoryService;
+    private final QueueNumberService queueNumberService;
+    private final ScheduleSlotUsageService scheduleSlotUsageService;
+    private final IdGenerator idGenerator;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 构造器注入
@@ -52,12 +68,22 @@ public class RegistrationServiceImpl implements RegistrationService {
                                    ScheduleMapper scheduleMapper,
                                    UserMapper userMapper,
                                    PaymentService paymentService,
-                                   MessageService messageService) {
+                                   MessageService messageService,
+                                   SlotInventoryService slotInventoryService,
+                                   QueueNumberService queueNumberService,
+                                   ScheduleSlotUsageService scheduleSlotUsageService,
+                                   IdGenerator idGenerator,
+                                   ApplicationEventPublisher eventPublisher) {
         this.registrationMapper = registrationMapper;
         this.scheduleMapper = scheduleMapper;
         this.userMapper = userMapper;
         this.paymentService = paymentService;
         this.messageService = messageService;
+        this.slotInventoryService = slotInventoryService;
+        this.queueNumberService = queueNumberService;
+        this.scheduleSlotUsageService = scheduleSlotUsageService;
+        this.idGenerator = idGenerator;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -75,151 +101,180 @@ public class RegistrationServiceImpl implements RegistrationService {
                 registrationDTO.getScheduleId(),
                 registrationDTO.getDetailTimeSlot());
 
-        // 1. 验证患者
-        User patient = validatePatient(registrationDTO.getPatientId());
+        // 占用细分时段号源（Redis原子准入，通过后才写MySQL）
+        acquireDetailTimeSlot(registrationDTO);
 
-        // 2. 验证排班
-        ScheduleVO scheduleVO = validateSchedule(registrationDTO.getScheduleId());
+        return doCreateRegistration(registrationDTO, null);
+    }
+
+    /**
+     * 为已通过号源准入的请求创建挂号（异步挂号消费者调用）
+     * 号源不随事务回滚释放，由调用方在确认失败（非重试）后释放
+     *
+     * @param registrationDTO 挂号信息DTO
+     * @param bookingTicketNo 挂号凭证号，挂号表上唯一，消息重复投递时返回已创建的挂号
+     * @return 新增后的挂号VO
+     * @throws BusinessException 当患者不存在、排班不存在或号源不足时抛出异常
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public RegistrationVO createAdmittedRegistration(RegistrationDTO registrationDTO, String bookingTicketNo) {
+        log.info("创建已准入挂号 - 凭证号: {}, 患者ID: {}, 排班ID: {}, 细分时段: {}",
+                bookingTicketNo,
+                registrationDTO.getPatientId(),
+                registrationDTO.getScheduleId(),
+                registrationDTO.getDetailTimeSlot());
+
+        // 消费者落库后未确认即宕机时消息会被重新投递，凭证号已落库则直接返回
+        Registration existing = registrationMapper.selectByBookingTicketNo(bookingTicketNo);
+        if (existing != null) {
+            log.warn("挂号凭证已落库，跳过 - 凭证号: {}, 挂号单号: {}", bookingTicketNo, existing.getRegistrationNo());
+            RegistrationVO registrationVO = new RegistrationVO();
+            BeanUtils.copyProperties(existing, registrationVO);
+            return registrationVO;
+        }
+
+        return doCreateRegistration(registrationDTO, bookingTicketNo);
+    }
+
+    /**
+     * 写入挂号记录（号源已占用）
+     * 条件扣减号源 + 一次上下文查询完成全部校验，后续步骤复用已加载的数据，不再回查
+     */
+    private RegistrationVO doCreateRegistration(RegistrationDTO registrationDTO, String bookingTicketNo) {
+        String detailTimeSlot = registrationDTO.getDetailTimeSlot();
+        if (detailTimeSlot != null && DetailTimeSlot.of(detailTimeSlot) == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR.getCode(), "细分时段不存在");
+        }
 
-        // 3. 验证细分时段
-        validateDetailTimeSlot(registrationDTO, scheduleVO);
+        // 1. 条件扣减号源（排班可预约、未过期、有剩余号源、细分时段未满）
+        int decreased = scheduleMapper.decreaseRemainingNumberForBooking(
+                registrationDTO.getScheduleId(), registrationDTO.getDetailTimeSlot());
 
-        // 4. 扣减号源
-        decreaseScheduleNumber(registrationDTO.getScheduleId());
+        // 2. 一次取回排班、医生、科室、患者信息，并校验
+        BookingContext context = scheduleMapper.selectBookingContext(
+                registrationDTO.getScheduleId(), registrationDTO.getPatientId());
+        validateBookingContext(context, detailTimeSlot, decreased);
 
-        // 5. 创建挂号记录
-        Registration registration = buildRegistration(registrationDTO, scheduleVO);
+        // 3. 创建挂号记录，细分时段已预约数加一
+        Registration registration = buildRegistration(registrationDTO, context);
+        registration.setBookingTicketNo(bookingTicketNo);
         registrationMapper.insert(registration);
+        scheduleSlotUsageService.increase(registration.getScheduleId(), registration.getDetailTimeSlot());
+        eventPublisher.publishEvent(new ScheduleAvailabilityChangedEvent(
+                registration.getScheduleId(), registration.getDoctorId(), registration.getDepartmentId()));
 
-        // 6. 创建支付订单
-        createPaymentOrder(registration);
+        // 4. 创建支付订单
+        paymentService.createPendingPayment(registration, "WECHAT");
 
-        // 7. 发送通知
-        sendRegistrationNotice(registration, scheduleVO);
+        // 5. 发送通知
+        messageService.sendRegistrationSuccessNotice(registration, context.getPatientPhone(),
+                context.getDepartmentName(), context.getDoctorName());
 
         log.info("挂号创建成功 - ID: {}, 挂号单号: {}", registration.getId(), registration.getRegistrationNo());
 
-        RegistrationVO registrationVO = registrationMapper.selectDetailById(registration.getId());
-        enrichRegistrationVO(registrationVO);
-        return registrationVO;
+        return buildRegistrationVO(registration, context);
     }
 
     /**
-     * 验证患者是否存在
+     * 校验挂号上下文：扣减失败时按原因给出提示
      */
-    private User validatePatient(Long patientId) {
-        User patient = userMapper.selectById(patientId);
-        if (patient == null) {
+    private void validateBookingContext(BookingContext context, String detailTimeSlot, int decreased) {
+        if (context == null) {
+            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "排班不存在");
+        }
+        if (context.getPatientId() == null) {
             throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "患者不存在");
         }
-        return patient;
-    }
-
-    /**
-     * 验证排班是否可预约
-     */
-    private ScheduleVO validateSchedule(Long scheduleId) {
-        ScheduleVO scheduleVO = scheduleMapper.selectDetailById(scheduleId);
-        if (scheduleVO == null) {
-            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "排班不存在");
+        if (detailTimeSlot != null && !DetailTimeSlot.belongsTo(context.getTimeSlot(), detailTimeSlot)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR.getCode(), "细分时段与排班时段不符");
         }
-        if (scheduleVO.getStatus() != 1) {
-            throw new BusinessException(ResultCode.FAIL.getCode(), "该排班不可预约");
+        if (decreased > 0) {
+            return;
         }
-        if (scheduleVO.getRemainingNumber() <= 0) {
+        if (context.getScheduleDate().isBefore(LocalDate.now())) {
+            throw new BusinessException(ResultCode.FAIL.getCode(), "挂号日期已过期");
+        }
+        if (context.getRemainingNumber() <= 0) {
             throw new BusinessException(ResultCode.FAIL.getCode(), "号源已满");
         }
-        if (scheduleVO.getScheduleDate().isBefore(LocalDate.now())) {
-            throw new BusinessException(ResultCode.FAIL.getCode(), "挂号日期已过期");
+        if (context.getStatus() != 1) {
+            throw new BusinessException(ResultCode.FAIL.getCode(), "该排班不可预约");
         }
-        return scheduleVO;
+        throw new BusinessException(ResultCode.FAIL.getCode(), "该时段已满，请选择其他时段");
     }
 
     /**
-     * 验证细分时段是否可预约
+     * 占用细分时段号源
+     * 由号源库存在Redis中原子判定（剩余号源、时段容量、重复预约），事务未提交时自动释放
      */
-    private void validateDetailTimeSlot(RegistrationDTO dto, ScheduleVO scheduleVO) {
+    private void acquireDetailTimeSlot(RegistrationDTO dto) {
         String detailTimeSlot = dto.getDetailTimeSlot();
         if (detailTimeSlot == null || detailTimeSlot.isEmpty()) {
             throw new BusinessException(ResultCode.FAIL.getCode(), "请选择就诊时段");
         }
-
-        // 查询该细分时段已预约数量
-        List<Map<String, Object>> bookedCounts = registrationMapper.countByScheduleAndDetailSlot(dto.getScheduleId());
-        Map<String, Integer> bookedMap = new HashMap<>();
-        for (Map<String, Object> item : bookedCounts) {
-            String slot = (String) item.get("detailTimeSlot");
-            Integer count = ((Number) item.get("count")).intValue();
-            bookedMap.put(slot, count);
-        }
-
-        Integer slotCapacity = scheduleVO.getSlotCapacity() != null ? scheduleVO.getSlotCapacity() : 5;
-        Integer bookedCount = bookedMap.getOrDefault(detailTimeSlot, 0);
-        if (bookedCount >= slotCapacity) {
-            throw new BusinessException(ResultCode.FAIL.getCode(), "该时段已满，请选择其他时段");
-        }
-
-        // 检查用户是否已预约该时段
-        List<String> userBookedSlots = registrationMapper.selectBookedDetailSlots(dto.getPatientId(), dto.getScheduleId());
-        if (userBookedSlots.contains(detailTimeSlot)) {
-            throw new BusinessException(ResultCode.FAIL.getCode(), "您已预约该时段");
-        }
+        slotInventoryService.acquire(dto.getScheduleId(), detailTimeSlot, dto.getPatientId());
+        releaseDetailTimeSlotOnRollback(dto);
     }
 
     /**
-     * 扣减排班号源
+     * 注册事务回调：事务未提交时释放已占用的号源
      */
-    private void decreaseScheduleNumber(Long scheduleId) {
-        int result = scheduleMapper.decreaseRemainingNumber(scheduleId);
-        if (result <= 0) {
-            throw new BusinessException(ResultCode.FAIL.getCode(), "号源不足，挂号失败");
-        }
+    private void releaseDetailTimeSlotOnRollback(RegistrationDTO dto) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    log.info("挂号未成功，释放号源 - 排班ID: {}, 细分时段: {}", dto.getScheduleId(), dto.getDetailTimeSlot());
+                    slotInventoryService.release(dto.getScheduleId(), dto.getDetailTimeSlot(), dto.getPatientId());
+                }
+            }
+        });
     }
 
     /**
      * 构建挂号实体
      */
-    private Registration buildRegistration(RegistrationDTO dto, ScheduleVO scheduleVO) {
-        Integer maxQueueNumber = registrationMapper.selectMaxQueueNumber(dto.getScheduleId());
-        int queueNumber = (maxQueueNumber == null ? 0 : maxQueueNumber) + 1;
+    private Registration buildRegistration(RegistrationDTO dto, BookingContext context) {
+        int queueNumber = queueNumberService.nextQueueNumber(dto.getScheduleId());
 
         Registration registration = new Registration();
         registration.setRegistrationNo(generateRegistrationNo());
         registration.setPatientId(dto.getPatientId());
-        registration.setDoctorId(scheduleVO.getDoctorId());
-        registration.setDepartmentId(scheduleVO.getDepartmentId());
+        registration.setDoctorId(context.getDoctorId());
+        registration.setDepartmentId(context.getDepartmentId());
         registration.setScheduleId(dto.getScheduleId());
-        registration.setRegistrationDate(scheduleVO.getScheduleDate());
-        registration.setTimeSlot(scheduleVO.getTimeSlot());
+        registration.setRegistrationDate(context.getScheduleDate());
+        registration.setTimeSlot(context.getTimeSlot());
         registration.setQueueNumber(queueNumber);
-        registration.setRegistrationFee(scheduleVO.getRegistrationFee());
+        registration.setRegistrationFee(context.getRegistrationFee());
         registration.setStatus(RegistrationStatus.PENDING);
         registration.setSymptom(dto.getSymptom());
         registration.setPaymentStatus(PaymentStatus.PENDING);
         registration.setDetailTimeSlot(dto.getDetailTimeSlot());
+        // 显式设置时间，返回的VO直接由实体组装，不再回查数据库
+        LocalDateTime now = LocalDateTime.now();
+        registration.setCreateTime(now);
+        registration.setUpdateTime(now);
         return registration;
     }
 
     /**
-     * 创建支付订单
+     * 由已加载的挂号实体和上下文组装挂号VO
      */
-    private void createPaymentOrder(Registration registration) {
-        PaymentDTO paymentDTO = new PaymentDTO();
-        paymentDTO.setRegistrationId(registration.getId());
-        paymentDTO.setAmount(registration.getRegistrationFee());
-        paymentDTO.setPaymentMethod("WECHAT");
-        paymentService.createPayment(paymentDTO);
-    }
-
-    /**
-     * 发送挂号成功通知
-     */
-    private void sendRegistrationNotice(Registration registration, ScheduleVO scheduleVO) {
-        messageService.sendRegistrationSuccessNotice(registration, scheduleVO.getDepartmentName(), scheduleVO.getDoctorName());
+    private RegistrationVO buildRegistrationVO(Registration registration, BookingContext context) {
+        RegistrationVO registrationVO = new RegistrationVO();
+        BeanUtils.copyProperties(registration, registrationVO);
+        registrationVO.setPatientName(context.getPatientName());
+        registrationVO.setPatientPhone(context.getPatientPhone());
+        registrationVO.setPatientIdCard(context.getPatientIdCard());
+        registrationVO.setDoctorName(context.getDoctorName());
+        registrationVO.setDoctorTitle(context.getDoctorTitle());
+        registrationVO.setDepartmentName(context.getDepartmentName());
+        enrichRegistrationVO(registrationVO);
+        return registrationVO;
     }
 
-
-
     /**
      * 取消挂号pp/schedule
      *
@@ -254,8 +309,8 @@ public class RegistrationServiceImpl implements RegistrationService {
             log.info("挂号已支付，需要退费 - ID: {}，挂号单号: {}，挂号费: {}", id, registration.getRegistrationNo(), registration.getRegistrationFee());
             //更新支付状态为已退款
             updateRegistration.setPaymentStatus(PaymentStatus.REFUNDED);
-            //发送退款消息到RabbitMQ队列，由消费者异步处理退款
-            paymentService.refundAsync(registration.getRegistrationNo(), registration.getRegistrationFee());
+            //退款消息随本事务写入发件箱，提交后投递到RabbitMQ队列，由消费者异步处理退款
+            paymentService.refundAsync(registration);
             log.info("挂号取消成功，已发起退款 - ID: {}，退款金额: {}", id, registration.getRegistrationFee());
         }
         int result = registrationMapper.updateById(updateRegistration);
@@ -264,11 +319,88 @@ public class RegistrationServiceImpl implements RegistrationService {
             throw new BusinessException(ResultCode.FAIL.getCode(), "挂号取消失败");
         }
         log.info("挂号取消成功 - ID: {}", id);
+        scheduleSlotUsageService.decrease(registration.getScheduleId(), registration.getDetailTimeSlot());
+        eventPublisher.publishEvent(new ScheduleAvailabilityChangedEvent(
+                registration.getScheduleId(), registration.getDoctorId(), registration.getDepartmentId()));
+        // 事务提交后释放号源库存
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                slotInventoryService.release(registration.getScheduleId(), registration.getDetailTimeSlot(), registration.getPatientId());
+            }
+        });
         // 发送挂号取消通知
         RegistrationVO registrationVO = registrationMapper.selectDetailById(id);
         messageService.sendRegistrationCancelNotice(registration, registrationVO.getDepartmentName(), registrationVO.getDoctorName());
     }
 
+    /**
+     * 批量取消排班下的全部有效挂号
+     * 行锁查询后以集合SQL一次更新挂号、号源和支付记录，退款消息在提交后批量发布，通知批量插入
+     *
+     * @param scheduleId 排班ID
+     * @return 取消的挂号数
+     * @throws BusinessException 当挂号在取消过程中状态发生变化时抛出异常
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int cancelRegistrationsBySchedule(Long scheduleId) {
+        log.info("批量取消排班挂号 - 排班ID: {}", scheduleId);
+
+        // 先关闭Redis库存拒绝新的准入，事务结束（提交或回滚）后清除库存，以数据库为准重新加载
+        slotInventoryService.close(scheduleId);
+        eventPublisher.publishEvent(new SlotInventoryEvictEvent(scheduleId));
+
+        List<Registration> registrations = registrationMapper.selectCancellableByScheduleForUpdate(scheduleId);
+        if (registrations.isEmpty()) {
+            log.info("排班下无需取消的挂号 - 排班ID: {}", scheduleId);
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(registrations.size());
+        List<Registration> paidRegistrations = new ArrayList<>();
+        for (Registration registration : registrations) {
+            ids.add(registration.getId());
+            if (registration.getPaymentStatus() == PaymentStatus.PAID) {
+                paidRegistrations.add(registration);
+            }
+        }
+
+        // 更新挂号状态为已取消（已支付的同时标记为已退款）
+        int cancelled = registrationMapper.batchCancel(ids);
+        if (cancelled != ids.size()) {
+            log.error("批量取消挂号失败 - 排班ID: {}, 应取消: {}, 实际: {}", scheduleId, ids.size(), cancelled);
+            throw new BusinessException(ResultCode.FAIL.getCode(), "批量取消挂号失败");
+        }
+
+        // 回补排班号源并按挂号记录重建细分时段已预约数
+        scheduleMapper.increaseRemainingNumberBy(scheduleId, cancelled);
+        scheduleSlotUsageService.rebuild(scheduleId);
+
+        // 已支付的挂号批量发起退款
+        paymentService.refundBatchAsync(paidRegistrations);
+
+        Registration first = registrations.get(0);
+        eventPublisher.publishEvent(new ScheduleAvailabilityChangedEvent(
+                scheduleId, first.getDoctorId(), first.getDepartmentId()));
+        // 批量发送挂号取消通知
+        ScheduleVO schedule = scheduleMapper.selectDetailById(scheduleId);
+        messageService.batchSendRegistrationCancelNotice(registrations,
+                schedule != null ? schedule.getDepartmentName() : null,
+                schedule != null ? schedule.getDoctorName() : null);
+
+        log.info("批量取消排班挂号成功 - 排班ID: {}, 取消: {}, 退款: {}", scheduleId, cancelled, paidRegistrations.size());
+        return cancelled;
+    }
+
+    /**
+     * 排班停诊：在排班状态更新的同一事务中批量取消挂号
+     */
+    @EventListener
+    public void onScheduleSuspended(ScheduleSuspendedEvent event) {
+        cancelRegistrationsBySchedule(event.getScheduleId());
+    }
+
     /**
      * 根据ID查询挂号详情
      *
@@ -513,9 +645,8 @@ public class RegistrationServiceImpl implements RegistrationService {
         Registration registration = getRegistrationEntityById(id);
         validateStatus(registration, RegistrationStatus.CALLED, "当前状态不允许过号处理");
 
-        // 获取当前最大排队号
-        Integer maxQueueNumber = registrationMapper.selectMaxQueueNumber(registration.getScheduleId());
-        int newQueueNumber = (maxQueueNumber == null ? 0 : maxQueueNumber) + 1;
+        // 分配新的排队号（排到最后）
+        int newQueueNumber = queueNumberService.nextQueueNumber(registration.getScheduleId());
 
         // 更新状态为待就诊，排队号改为最后
         Registration updateRegistration = new Registration();
@@ -576,12 +707,10 @@ public class RegistrationServiceImpl implements RegistrationService {
 
     /**
      * 生成挂号单号
-     * 格式: REG + yyyyMMddHHmmss + 4位随机数
+     * 格式: REG + 雪花ID
      */
     private String generateRegistrationNo() {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        int random = (int) (Math.random() * 9000) + 1000;
-        return "REG" + timestamp + random;
+        return idGenerator.nextNo("REG");
     }
 
     /**
@@ -6,18 +6,22 @@ import com.hospital.registration.common.ResultCode;
 import com.hospital.registration.dto.AssignPermissionDTO;
 import com.hospital.registration.dto.RoleDTO;
 import com.hospital.registration.entity.Role;
-import com.hospital.registration.entity.RolePermission;
+import com.hospital.registration.event.PermissionChangedEvent;
 import com.hospital.registration.mapper.RoleMapper;
 import com.hospital.registration.mapper.RolePermissionMapper;
 import com.hospital.registration.service.RoleService;
 import com.hospital.registration.vo.RoleVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @title: RoleServiceImpl
@@ -32,13 +36,16 @@ public class RoleServiceImpl implements RoleService {
 
     private final RoleMapper roleMapper;
     private final RolePermissionMapper rolePermissionMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 构造器注入
      */
-    public RoleServiceImpl(RoleMapper roleMapper, RolePermissionMapper rolePermissionMapper) {
+    public RoleServiceImpl(RoleMapper roleMapper, RolePermissionMapper rolePermissionMapper,
+                           ApplicationEventPublisher eventPublisher) {
         this.roleMapper = roleMapper;
         this.rolePermissionMapper = rolePermissionMapper;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -103,6 +110,7 @@ public class RoleServiceImpl implements RoleService {
         }
 
         log.info("创建角色成功 - ID: {}, 角色编码: {}", role.getId(), role.getRoleCode());
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
         return convertToVO(role);
     }
 
@@ -139,6 +147,7 @@ public class RoleServiceImpl implements RoleService {
         }
 
         log.info("修改角色成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
         return getRoleById(id);
     }
 
@@ -175,6 +184,7 @@ public class RoleServiceImpl implements RoleService {
         rolePermissionMapper.deleteByRoleId(id);
 
         log.info("删除角色成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -193,18 +203,29 @@ public class RoleServiceImpl implements RoleService {
             throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "角色不存在");
         }
 
-        // 先删除原有的角色权限关联
-        rolePermissionMapper.deleteByRoleId(roleId);
-
-        // 批量插入新的角色权限关联
-        for (Long permissionId : assignPermissionDTO.getPermissionIds()) {
-            RolePermission rolePermission = new RolePermission();
-            rolePermission.setRoleId(roleId);
-            rolePermission.setPermissionId(permissionId);
-            rolePermissionMapper.insert(rolePermission);
+        // 与现有关联比对，只删除移除项、只插入新增项
+        Set<Long> targetIds = new LinkedHashSet<>(assignPermissionDTO.getPermissionIds());
+        Set<Long> currentIds = new HashSet<>(rolePermissionMapper.selectPermissionIdsByRoleId(roleId));
+        List<Long> removedIds = new ArrayList<>();
+        for (Long permissionId : currentIds) {
+            if (!targetIds.contains(permissionId)) {
+                removedIds.add(permissionId);
+            }
+        }
+        targetIds.removeAll(currentIds);
+        if (removedIds.isEmpty() && targetIds.isEmpty()) {
+            log.info("角色权限未变化 - 角色ID: {}", roleId);
+            return;
+        }
+        if (!removedIds.isEmpty()) {
+            rolePermissionMapper.deleteByRoleIdAndPermissionIds(roleId, removedIds);
+        }
+        if (!targetIds.isEmpty()) {
+            rolePermissionMapper.batchInsert(roleId, targetIds);
         }
 
-        log.info("为角色分配权限成功 - 角色ID: {}", roleId);
+        log.info("为角色分配权限成功 - 角色ID: {}, 新增: {}, 移除: {}", roleId, targetIds.size(), removedIds.size());
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -247,6 +268,7 @@ public class RoleServiceImpl implements RoleService {
     public void batchUpdateStatus(List<Long> ids, Integer status) {
         log.info("批量更新角色状态 - ids: {}, status: {}", ids, status);
         roleMapper.batchUpdateStatus(ids, status);
+        eventPublisher.publishEvent(new PermissionChangedEvent(null));
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.hospital.registration.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.cache.ScheduleAvailabilityCache;
 import com.hospital.registration.common.BusinessException;
 import com.hospital.registration.common.DetailTimeSlot;
 import com.hospital.registration.common.ResultCode;
@@ -8,23 +9,27 @@ import com.hospital.registration.dto.ScheduleDTO;
 import com.hospital.registration.entity.Department;
 import com.hospital.registration.entity.Doctor;
 import com.hospital.registration.entity.Schedule;
+import com.hospital.registration.event.ScheduleAvailabilityChangedEvent;
+import com.hospital.registration.event.ScheduleSuspendedEvent;
+import com.hospital.registration.event.SlotInventoryEvictEvent;
 import com.hospital.registration.mapper.DepartmentMapper;
 import com.hospital.registration.mapper.DoctorMapper;
 import com.hospital.registration.mapper.RegistrationMapper;
 import com.hospital.registration.mapper.ScheduleMapper;
 import com.hospital.registration.service.ScheduleService;
+import com.hospital.registration.service.ScheduleSlotUsageService;
 import com.hospital.registration.vo.ScheduleVO;
 import com.hospital.registration.vo.app.DetailTimeSlotVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * @title: ScheduleServiceImpl
@@ -41,6 +46,9 @@ public class ScheduleServiceImpl implements ScheduleService {
     private final DoctorMapper doctorMapper;
     private final DepartmentMapper departmentMapper;
     private final RegistrationMapper registrationMapper;
+    private final ScheduleSlotUsageService scheduleSlotUsageService;
+    private final ScheduleAvailabilityCache scheduleAvailabilityCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 构造器注入
@@ -48,11 +56,17 @@ public class ScheduleServiceImpl implements ScheduleService {
     public ScheduleServiceImpl(ScheduleMapper scheduleMapper,
                                DoctorMapper doctorMapper,
                                DepartmentMapper departmentMapper,
-                               RegistrationMapper registrationMapper) {
+                               RegistrationMapper registrationMapper,
+                               ScheduleSlotUsageService scheduleSlotUsageService,
+                               ScheduleAvailabilityCache scheduleAvailabilityCache,
+                               ApplicationEventPublisher eventPublisher) {
         this.scheduleMapper = scheduleMapper;
         this.doctorMapper = doctorMapper;
         this.departmentMapper = departmentMapper;
         this.registrationMapper = registrationMapper;
+        this.scheduleSlotUsageService = scheduleSlotUsageService;
+        this.scheduleAvailabilityCache = scheduleAvailabilityCache;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -108,6 +122,7 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
 
         log.info("排班新增成功 - ID: {}, 医生ID: {}", schedule.getId(), schedule.getDoctorId());
+        publishAvailabilityChanged(schedule);
 
         // 查询并返回完整的排班信息
         return scheduleMapper.selectDetailById(schedule.getId());
@@ -122,6 +137,7 @@ public class ScheduleServiceImpl implements ScheduleService {
      * @throws BusinessException 当排班不存在、医生不存在、科室不存在或排班冲突时抛出异常
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public ScheduleVO updateSchedule(Long id, ScheduleDTO scheduleDTO) {
         log.info("更新排班信息 - ID: {}, 医生ID: {}", id, scheduleDTO.getDoctorId());
 
@@ -171,7 +187,9 @@ public class ScheduleServiceImpl implements ScheduleService {
                     "新的总号源数不能小于已预约数量(" + bookedNumber + ")");
         }
 
-        // 更新排班信息
+        // 更新排班信息（医生或科室变更时原医生、科室的缓存也需失效）
+        ScheduleAvailabilityChangedEvent previousEvent = new ScheduleAvailabilityChangedEvent(
+                id, schedule.getDoctorId(), schedule.getDepartmentId());
         BeanUtils.copyProperties(scheduleDTO, schedule);
         // 重新计算剩余号源数
         schedule.setRemainingNumber(scheduleDTO.getTotalNumber() - bookedNumber);
@@ -183,6 +201,10 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
 
         log.info("排班更新成功 - ID: {}", id);
+        // 号源数变化，事务提交后清除库存以便按新数据重新加载
+        eventPublisher.publishEvent(new SlotInventoryEvictEvent(id));
+        eventPublisher.publishEvent(previousEvent);
+        publishAvailabilityChanged(schedule);
 
         // 查询并返回完整的排班信息
         return scheduleMapper.selectDetailById(id);
@@ -195,6 +217,7 @@ public class ScheduleServiceImpl implements ScheduleService {
      * @throws BusinessException 当排班不存在或已有预约时抛出异常
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void deleteSchedule(Long id) {
         log.info("删除排班 - ID: {}", id);
 
@@ -220,6 +243,8 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
 
         log.info("排班删除成功 - ID: {}", id);
+        eventPublisher.publishEvent(new SlotInventoryEvictEvent(id));
+        publishAvailabilityChanged(schedule);
     }
 
     /**
@@ -291,17 +316,18 @@ public class ScheduleServiceImpl implements ScheduleService {
         log.info("查询医生的可预约排班列表 - 医生ID: {}, 开始日期: {}, 结束日期: {}",
                 doctorId, startDate, endDate);
 
-        // 检查医生是否存在
-        Doctor doctor = doctorMapper.selectById(doctorId);
-        if (doctor == null) {
-            log.warn("医生不存在 - 医生ID: {}", doctorId);
-            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "医生不存在");
-        }
-
-        List<ScheduleVO> schedules = scheduleMapper.selectAvailableByDoctor(doctorId, startDate, endDate);
-
-        // 丰富VO信息
-        schedules.forEach(this::enrichScheduleVO);
+        List<ScheduleVO> schedules = scheduleAvailabilityCache.getAvailableByDoctor(doctorId, startDate, endDate, () -> {
+            // 检查医生是否存在
+            Doctor doctor = doctorMapper.selectById(doctorId);
+            if (doctor == null) {
+                log.warn("医生不存在 - 医生ID: {}", doctorId);
+                throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "医生不存在");
+            }
+            List<ScheduleVO> list = scheduleMapper.selectAvailableByDoctor(doctorId, startDate, endDate);
+            // 丰富VO信息
+            list.forEach(this::enrichScheduleVO);
+            return list;
+        });
 
         log.info("查询到 {} 条可预约排班", schedules.size());
         return schedules;
@@ -320,17 +346,18 @@ public class ScheduleServiceImpl implements ScheduleService {
         log.info("查询科室的可预约排班列表 - 科室ID: {}, 开始日期: {}, 结束日期: {}",
                 departmentId, startDate, endDate);
 
-        // 检查科室是否存在
-        Department department = departmentMapper.selectById(departmentId);
-        if (department == null) {
-            log.warn("科室不存在 - 科室ID: {}", departmentId);
-            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "科室不存在");
-        }
-
-        List<ScheduleVO> schedules = scheduleMapper.selectAvailableByDepartment(departmentId, startDate, endDate);
-
-        // 丰富VO信息
-        schedules.forEach(this::enrichScheduleVO);
+        List<ScheduleVO> schedules = scheduleAvailabilityCache.getAvailableByDepartment(departmentId, startDate, endDate, () -> {
+            // 检查科室是否存在
+            Department department = departmentMapper.selectById(departmentId);
+            if (department == null) {
+                log.warn("科室不存在 - 科室ID: {}", departmentId);
+                throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "科室不存在");
+            }
+            List<ScheduleVO> list = scheduleMapper.selectAvailableByDepartment(departmentId, startDate, endDate);
+            // 丰富VO信息
+            list.forEach(this::enrichScheduleVO);
+            return list;
+        });
 
         log.info("查询到 {} 条可预约排班", schedules.size());
         return schedules;
@@ -344,6 +371,7 @@ public class ScheduleServiceImpl implements ScheduleService {
      * @throws BusinessException 当排班不存在时抛出异常
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void updateScheduleStatus(Long id, Integer status) {
         log.info("更新排班状态 - ID: {}, 状态: {}", id, status);
 
@@ -366,6 +394,14 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
 
         log.info("排班状态更新成功 - ID: {}, 新状态: {}", id, status);
+
+        // 停诊：同一事务内由挂号服务批量取消该排班下的全部有效挂号
+        if (status == 0 && !Objects.equals(schedule.getStatus(), 0)) {
+            eventPublisher.publishEvent(new ScheduleSuspendedEvent(id));
+        }
+        // 事务结束后再清除库存，避免提交前的挂号把旧状态重新加载进Redis
+        eventPublisher.publishEvent(new SlotInventoryEvictEvent(id));
+        publishAvailabilityChanged(schedule);
     }
 
     /**
@@ -401,9 +437,49 @@ public class ScheduleServiceImpl implements ScheduleService {
 
     /**
      * 获取排班的细分时段列表（患者端）
+     * 各时段号源走缓存，登录患者再叠加本人已预约的时段
      */
     @Override
     public List<DetailTimeSlotVO> getDetailSlots(Long scheduleId, Long patientId) {
+        List<DetailTimeSlotVO> slots = scheduleAvailabilityCache.getDetailSlots(scheduleId, () -> loadDetailSlots(scheduleId));
+        if (patientId == null) {
+            return slots;
+        }
+
+        // 查询用户已预约的细分时段，按序号记入位图
+        List<String> userBookedSlots = registrationMapper.selectBookedDetailSlots(patientId, scheduleId);
+        int bookedMask = 0;
+        for (String slotCode : userBookedSlots) {
+            DetailTimeSlot slot = DetailTimeSlot.of(slotCode);
+            if (slot != null) {
+                bookedMask |= 1 << slot.getOrdinal();
+            }
+        }
+        if (bookedMask == 0) {
+            return slots;
+        }
+
+        // 缓存对象共享，叠加时复制
+        List<DetailTimeSlotVO> result = new ArrayList<>(slots.size());
+        for (DetailTimeSlotVO slot : slots) {
+            DetailTimeSlot config = DetailTimeSlot.of(slot.getSlotCode());
+            if (config != null && (bookedMask & (1 << config.getOrdinal())) != 0) {
+                DetailTimeSlotVO vo = new DetailTimeSlotVO();
+                BeanUtils.copyProperties(slot, vo);
+                vo.setAvailable(false);
+                vo.setUnavailableReason("BOOKED");
+                result.add(vo);
+            } else {
+                result.add(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从数据库加载排班各细分时段号源
+     */
+    private List<DetailTimeSlotVO> loadDetailSlots(Long scheduleId) {
         // 查询排班信息
         ScheduleVO schedule = scheduleMapper.selectDetailById(scheduleId);
         if (schedule == null) {
@@ -416,23 +492,11 @@ public class ScheduleServiceImpl implements ScheduleService {
         // 每个细分时段的容量
         Integer slotCapacity = schedule.getSlotCapacity() != null ? schedule.getSlotCapacity() : 5;
 
-        // 查询各细分时段已预约数量
-        List<Map<String, Object>> bookedCounts = registrationMapper.countByScheduleAndDetailSlot(scheduleId);
-        Map<String, Integer> bookedMap = new HashMap<>();
-        for (Map<String, Object> item : bookedCounts) {
-            String slot = (String) item.get("detailTimeSlot");
-            Integer count = ((Number) item.get("count")).intValue();
-            bookedMap.put(slot, count);
-        }
-
-        // 查询用户已预约的细分时段
-        List<String> userBookedSlots = new ArrayList<>();
-        if (patientId != null) {
-            userBookedSlots = registrationMapper.selectBookedDetailSlots(patientId, scheduleId);
-        }
+        // 查询各细分时段已预约数量（按细分时段序号）
+        short[] bookedCounts = scheduleSlotUsageService.getBookedCounts(scheduleId, schedule.getTimeSlot());
 
         // 构建细分时段VO列表
-        List<DetailTimeSlotVO> result = new ArrayList<>();
+        List<DetailTimeSlotVO> result = new ArrayList<>(slotConfigs.size());
         for (DetailTimeSlot config : slotConfigs) {
             DetailTimeSlotVO vo = new DetailTimeSlotVO();
             vo.setSlotCode(config.getSlotCode());
@@ -440,15 +504,12 @@ public class ScheduleServiceImpl implements ScheduleService {
             vo.setPeriod(config.getPeriod());
             vo.setCapacity(slotCapacity);
 
-            Integer booked = bookedMap.getOrDefault(config.getSlotCode(), 0);
+            int booked = bookedCounts[config.getOrdinal()];
             vo.setBookedCount(booked);
             vo.setRemainingCount(slotCapacity - booked);
 
             // 判断是否可预约
-            if (userBookedSlots.contains(config.getSlotCode())) {
-                vo.setAvailable(false);
-                vo.setUnavailableReason("BOOKED");
-            } else if (vo.getRemainingCount() <= 0) {
+            if (vo.getRemainingCount() <= 0) {
                 vo.setAvailable(false);
                 vo.setUnavailableReason("FULL");
             } else {
@@ -462,6 +523,14 @@ public class ScheduleServiceImpl implements ScheduleService {
         return result;
     }
 
+    /**
+     * 发布排班号源变化事件
+     */
+    private void publishAvailabilityChanged(Schedule schedule) {
+        eventPublisher.publishEvent(new ScheduleAvailabilityChangedEvent(
+                schedule.getId(), schedule.getDoctorId(), schedule.getDepartmentId()));
+    }
+
     /**
      * 丰富ScheduleVO信息(添加时间段名称和时间范围)
      */
@@ -0,0 +1,153 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.DetailTimeSlot;
+import com.hospital.registration.common.TimeSlot;
+import com.hospital.registration.entity.ScheduleSlotUsage;
+import com.hospital.registration.mapper.ScheduleSlotUsageMapper;
+import com.hospital.registration.service.ScheduleSlotUsageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @title: ScheduleSlotUsageServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排班细分时段已预约数服务实现类
+ * 挂号/取消时按主键原子增减，查询时按主键前缀读取，不再对registration做GROUP BY统计。
+ * 修复时逐个排班加锁比对，只写入与挂号记录不一致的细分时段，不长时间锁住整张表。
+ */
+@Slf4j
+@Service
+public class ScheduleSlotUsageServiceImpl implements ScheduleSlotUsageService {
+
+    private final ScheduleSlotUsageMapper scheduleSlotUsageMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 构造器注入
+     */
+    public ScheduleSlotUsageServiceImpl(ScheduleSlotUsageMapper scheduleSlotUsageMapper,
+                                        TransactionTemplate transactionTemplate) {
+        this.scheduleSlotUsageMapper = scheduleSlotUsageMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 已预约数加一
+     */
+    @Override
+    public void increase(Long scheduleId, String detailTimeSlot) {
+        if (detailTimeSlot == null) {
+            return;
+        }
+        scheduleSlotUsageMapper.increaseBookedCount(scheduleId, detailTimeSlot);
+    }
+
+    /**
+     * 已预约数减一
+     */
+    @Override
+    public void decrease(Long scheduleId, String detailTimeSlot) {
+        if (detailTimeSlot == null) {
+            return;
+        }
+        int result = scheduleSlotUsageMapper.decreaseBookedCount(scheduleId, detailTimeSlot);
+        if (result <= 0) {
+            log.warn("细分时段已预约数已为0，待修复任务校正 - 排班ID: {}, 细分时段: {}", scheduleId, detailTimeSlot);
+        }
+    }
+
+    /**
+     * 查询各细分时段已预约数
+     */
+    @Override
+    public short[] getBookedCounts(Long scheduleId, TimeSlot timeSlot) {
+        short[] counts = new short[DetailTimeSlot.getSlotsByTimeSlot(timeSlot).size()];
+        List<ScheduleSlotUsage> usages = scheduleSlotUsageMapper.selectByScheduleId(scheduleId);
+        for (ScheduleSlotUsage usage : usages) {
+            DetailTimeSlot slot = DetailTimeSlot.of(usage.getDetailTimeSlot());
+            // 忽略不属于该大时段的历史数据
+            if (slot != null && DetailTimeSlot.belongsTo(timeSlot, slot.getSlotCode())) {
+                counts[slot.getOrdinal()] = (short) Math.min(usage.getBookedCount(), Short.MAX_VALUE);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 重建指定排班的已预约数
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int rebuild(Long scheduleId) {
+        int corrected = reconcile(scheduleId);
+        log.info("细分时段已预约数重建完成 - 排班ID: {}, 校正: {}", scheduleId, corrected);
+        return corrected;
+    }
+
+    /**
+     * 修复指定日期及之后的已预约数
+     * 每个排班独立事务，单个排班失败不影响其他排班
+     */
+    @Override
+    public int repair(LocalDate startDate) {
+        List<Long> scheduleIds = scheduleSlotUsageMapper.selectScheduleIdsFrom(startDate);
+        int corrected = 0;
+        int failed = 0;
+        for (Long scheduleId : scheduleIds) {
+            try {
+                Integer count = transactionTemplate.execute(status -> reconcile(scheduleId));
+                corrected += count != null ? count : 0;
+            } catch (Exception e) {
+                failed++;
+                log.error("细分时段已预约数修复失败 - 排班ID: {}, 错误: {}", scheduleId, e.getMessage());
+            }
+        }
+        log.info("细分时段已预约数修复完成 - 开始日期: {}, 排班数: {}, 校正: {}, 失败: {}",
+                startDate, scheduleIds.size(), corrected, failed);
+        return corrected;
+    }
+
+    /**
+     * 比对并校正单个排班的已预约数（须在事务中调用）
+     * 先锁住该排班的已预约数记录，阻塞并发的挂号/取消增减，再统计挂号记录，保证比对期间两边一致
+     */
+    private int reconcile(Long scheduleId) {
+        Map<String, Integer> stored = new HashMap<>();
+        for (ScheduleSlotUsage usage : scheduleSlotUsageMapper.selectByScheduleIdForUpdate(scheduleId)) {
+            stored.put(usage.getDetailTimeSlot(), usage.getBookedCount());
+        }
+        Map<String, Integer> actual = new HashMap<>();
+        for (ScheduleSlotUsage usage : scheduleSlotUsageMapper.countActiveBookings(scheduleId)) {
+            actual.put(usage.getDetailTimeSlot(), usage.getBookedCount());
+        }
+
+        int corrected = 0;
+        for (Map.Entry<String, Integer> entry : actual.entrySet()) {
+            if (!Objects.equals(stored.remove(entry.getKey()), entry.getValue())) {
+                scheduleSlotUsageMapper.upsertBookedCount(scheduleId, entry.getKey(), entry.getValue());
+                corrected++;
+            }
+        }
+        // 剩余的细分时段已无有效挂号
+        for (Map.Entry<String, Integer> entry : stored.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() != 0) {
+                scheduleSlotUsageMapper.upsertBookedCount(scheduleId, entry.getKey(), 0);
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            log.warn("细分时段已预约数与挂号记录不一致，已校正 - 排班ID: {}, 校正时段数: {}", scheduleId, corrected);
+        }
+        return corrected;
+    }
+}
@@ -0,0 +1,397 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.BusinessException;
+import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.entity.Registration;
+import com.hospital.registration.entity.Schedule;
+import com.hospital.registration.event.SlotInventoryEvictEvent;
+import com.hospital.registration.mapper.RegistrationMapper;
+import com.hospital.registration.mapper.ScheduleMapper;
+import com.hospital.registration.service.SlotInventoryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @title: SlotInventoryServiceImpl
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 号源库存服务实现类
+ * 每个排班在Redis中对应一个Hash（剩余号源、细分时段容量、各细分时段已约数）和一个Set（已预约的 患者ID:细分时段），
+ * 挂号准入由Lua脚本一次原子判定并扣减，MySQL只在准入通过后写入。
+ * 启动时只加载缺失的库存，不覆盖其他节点正在使用的库存；对账由持有分布式锁的定时任务执行，
+ * 只修正两次采样之间持续不一致且期间无挂号活动的排班。
+ */
+@Slf4j
+@Service
+public class SlotInventoryServiceImpl implements SlotInventoryService {
+
+    private static final String INVENTORY_KEY_PREFIX = "slot:inventory:";
+    private static final String FIELD_REMAINING = "remaining";
+    private static final String FIELD_CAPACITY = "capacity";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_SLOT_PREFIX = "slot:";
+    private static final int DEFAULT_SLOT_CAPACITY = 5;
+    private static final String RECONCILE_LOCK_KEY = "slot:inventory:reconcile:lock";
+    private static final Duration RECONCILE_LOCK_TTL = Duration.ofMinutes(10);
+    // 两次采样间隔：给已准入但尚未提交的挂号留出落库时间
+    private static final long RECONCILE_GRACE_MILLIS = 5000L;
+
+    // 加载模式：仅在缺失时加载 / 强制覆盖；其余取值为"=剩余号源数"，仅当当前剩余号源等于该值时覆盖
+    private static final String LOAD_IF_ABSENT = "0";
+    private static final String LOAD_OVERWRITE = "1";
+
+    // 脚本返回码
+    private static final long CODE_NOT_LOADED = -1L;
+    private static final long CODE_SOLD_OUT = -2L;
+    private static final long CODE_SLOT_FULL = -3L;
+    private static final long CODE_DUPLICATE = -4L;
+    private static final long CODE_NOT_BOOKABLE = -5L;
+
+    /**
+     * 占用号源
+     * KEYS[1]=库存Hash, KEYS[2]=已预约Set; ARGV[1]=细分时段字段, ARGV[2]=患者ID:细分时段
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n" +
+            "if redis.call('HGET', KEYS[1], 'status') == '0' then return -5 end\n" +
+            "if redis.call('SISMEMBER', KEYS[2], ARGV[2]) == 1 then return -4 end\n" +
+            "local remaining = tonumber(redis.call('HGET', KEYS[1], 'remaining'))\n" +
+            "if remaining <= 0 then return -2 end\n" +
+            "local capacity = tonumber(redis.call('HGET', KEYS[1], 'capacity'))\n" +
+            "local booked = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')\n" +
+            "if booked >= capacity then return -3 end\n" +
+            "redis.call('HINCRBY', KEYS[1], 'remaining', -1)\n" +
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], 1)\n" +
+            "redis.call('SADD', KEYS[2], ARGV[2])\n" +
+            "return remaining - 1",
+            Long.class);
+
+    /**
+     * 释放号源（仅当该患者确实占用过该时段时才回补，保证幂等）
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end\n" +
+            "if redis.call('SREM', KEYS[2], ARGV[2]) == 0 then return 0 end\n" +
+            "redis.call('HINCRBY', KEYS[1], 'remaining', 1)\n" +
+            "if redis.call('HINCRBY', KEYS[1], ARGV[1], -1) < 0 then redis.call('HSET', KEYS[1], ARGV[1], 0) end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 加载库存
+     * ARGV[1]=加载模式, ARGV[2]=过期秒数, ARGV[3]=Hash字段对数量n, 随后2n个字段/值, 其余为已预约Set成员
+     */
+    private static final DefaultRedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[1] == '0' and redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+            "if string.sub(ARGV[1], 1, 1) == '=' and redis.call('HGET', KEYS[1], 'remaining') ~= string.sub(ARGV[1], 2) then return 0 end\n" +
+            "redis.call('DEL', KEYS[1], KEYS[2])\n" +
+            "local n = tonumber(ARGV[3])\n" +
+            "for i = 0, n - 1 do redis.call('HSET', KEYS[1], ARGV[4 + i * 2], ARGV[5 + i * 2]) end\n" +
+            "for i = 4 + n * 2, #ARGV do redis.call('SADD', KEYS[2], ARGV[i]) end\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2])\n" +
+            "if redis.call('EXISTS', KEYS[2]) == 1 then redis.call('EXPIRE', KEYS[2], ARGV[2]) end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 关闭库存（库存未加载时也写入关闭标记，防止按需加载到提交前的旧状态）
+     * KEYS[1]=库存Hash; ARGV[1]=未加载时关闭标记的过期秒数
+     */
+    private static final DefaultRedisScript<Long> CLOSE_SCRIPT = new DefaultRedisScript<>(
+            "local existed = redis.call('EXISTS', KEYS[1])\n" +
+            "redis.call('HSET', KEYS[1], 'status', '0')\n" +
+            "if existed == 0 then redis.call('HSET', KEYS[1], 'remaining', '0', 'capacity', '0') redis.call('EXPIRE', KEYS[1], ARGV[1]) end\n" +
+            "return existed",
+            Long.class);
+
+    /**
+     * 释放对账锁（仅持有者可释放）
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ScheduleMapper scheduleMapper;
+    private final RegistrationMapper registrationMapper;
+
+    /**
+     * 构造器注入
+     */
+    public SlotInventoryServiceImpl(StringRedisTemplate redisTemplate,
+                                    ScheduleMapper scheduleMapper,
+                                    RegistrationMapper registrationMapper) {
+        this.redisTemplate = redisTemplate;
+        this.scheduleMapper = scheduleMapper;
+        this.registrationMapper = registrationMapper;
+    }
+
+    /**
+     * 原子占用号源
+     */
+    @Override
+    public void acquire(Long scheduleId, String detailTimeSlot, Long patientId) {
+        List<String> keys = getKeys(scheduleId);
+        String slotField = FIELD_SLOT_PREFIX + detailTimeSlot;
+        String member = patientId + ":" + detailTimeSlot;
+
+        Long code = redisTemplate.execute(ACQUIRE_SCRIPT, keys, slotField, member);
+        if (code != null && code == CODE_NOT_LOADED) {
+            // 库存未加载（首次访问或已被清除），从数据库加载后重试一次
+            warmUp(scheduleId, false);
+            code = redisTemplate.execute(ACQUIRE_SCRIPT, keys, slotField, member);
+        }
+        if (code == null || code == CODE_NOT_LOADED) {
+            log.error("号源库存加载失败 - 排班ID: {}", scheduleId);
+            throw new BusinessException(ResultCode.FAIL.getCode(), "挂号失败，请稍后重试");
+        }
+        if (code == CODE_NOT_BOOKABLE) {
+            throw new BusinessException(ResultCode.FAIL.getCode(), "该排班不可预约");
+        }
+        if (code == CODE_DUPLICATE) {
+            throw new BusinessException(ResultCode.FAIL.getCode(), "您已预约该时段");
+        }
+        if (code == CODE_SOLD_OUT) {
+            throw new BusinessException(ResultCode.REGISTRATION_FULL.getCode(), "号源已满");
+        }
+        if (code == CODE_SLOT_FULL) {
+            throw new BusinessException(ResultCode.FAIL.getCode(), "该时段已满，请选择其他时段");
+        }
+        log.debug("号源占用成功 - 排班ID: {}, 细分时段: {}, 剩余号源: {}", scheduleId, detailTimeSlot, code);
+    }
+
+    /**
+     * 释放号源
+     */
+    @Override
+    public void release(Long scheduleId, String detailTimeSlot, Long patientId) {
+        if (detailTimeSlot == null) {
+            return;
+        }
+        try {
+            Long code = redisTemplate.execute(RELEASE_SCRIPT, getKeys(scheduleId),
+                    FIELD_SLOT_PREFIX + detailTimeSlot, patientId + ":" + detailTimeSlot);
+            log.debug("号源释放 - 排班ID: {}, 细分时段: {}, 结果: {}", scheduleId, detailTimeSlot, code);
+        } catch (Exception e) {
+            // 释放失败时清除库存，下次访问从数据库重新加载，避免号源永久丢失
+            log.error("号源释放失败，清除库存 - 排班ID: {}, 错误: {}", scheduleId, e.getMessage());
+            evict(scheduleId);
+        }
+    }
+
+    /**
+     * 从数据库预热库存
+     */
+    @Override
+    public void warmUp(Long scheduleId, boolean overwrite) {
+        load(scheduleId, overwrite ? LOAD_OVERWRITE : LOAD_IF_ABSENT);
+    }
+
+    /**
+     * 按指定模式从数据库加载库存
+     * @return 是否写入了Redis
+     */
+    private boolean load(Long scheduleId, String mode) {
+        Schedule schedule = scheduleMapper.selectById(scheduleId);
+        if (schedule == null) {
+            throw new BusinessException(ResultCode.NOT_FOUND.getCode(), "排班不存在");
+        }
+
+        // 统计各细分时段已预约数及已预约患者
+        List<Registration> bookings = registrationMapper.selectActiveSlotBookings(scheduleId);
+        Map<String, Integer> slotCounts = new HashMap<>();
+        List<String> members = new ArrayList<>(bookings.size());
+        for (Registration booking : bookings) {
+            if (booking.getDetailTimeSlot() == null) {
+                continue;
+            }
+            slotCounts.merge(booking.getDetailTimeSlot(), 1, Integer::sum);
+            members.add(booking.getPatientId() + ":" + booking.getDetailTimeSlot());
+        }
+
+        int slotCapacity = schedule.getSlotCapacity() != null ? schedule.getSlotCapacity() : DEFAULT_SLOT_CAPACITY;
+        List<String> args = new ArrayList<>();
+        args.add(mode);
+        args.add(String.valueOf(getTtlSeconds(schedule.getScheduleDate())));
+        args.add(String.valueOf(3 + slotCounts.size()));
+        args.addAll(Arrays.asList(FIELD_REMAINING, String.valueOf(schedule.getRemainingNumber())));
+        args.addAll(Arrays.asList(FIELD_CAPACITY, String.valueOf(slotCapacity)));
+        args.addAll(Arrays.asList(FIELD_STATUS, String.valueOf(schedule.getStatus())));
+        for (Map.Entry<String, Integer> entry : slotCounts.entrySet()) {
+            args.add(FIELD_SLOT_PREFIX + entry.getKey());
+            args.add(String.valueOf(entry.getValue()));
+        }
+        args.addAll(members);
+
+        Long loaded = redisTemplate.execute(LOAD_SCRIPT, getKeys(scheduleId), args.toArray());
+        boolean written = loaded != null && loaded == 1L;
+        if (written) {
+            log.info("号源库存已加载 - 排班ID: {}, 剩余号源: {}, 已预约: {}, 模式: {}",
+                    scheduleId, schedule.getRemainingNumber(), members.size(), mode);
+        }
+        return written;
+    }
+
+    /**
+     * 关闭库存
+     */
+    @Override
+    public void close(Long scheduleId) {
+        redisTemplate.execute(CLOSE_SCRIPT, Collections.singletonList(getKeys(scheduleId).get(0)), "600");
+        log.info("号源库存已关闭 - 排班ID: {}", scheduleId);
+    }
+
+    /**
+     * 清除库存
+     */
+    @Override
+    public void evict(Long scheduleId) {
+        redisTemplate.delete(getKeys(scheduleId));
+        log.info("号源库存已清除 - 排班ID: {}", scheduleId);
+    }
+
+    /**
+     * 排班变更后清除库存
+     * 在事务结束后执行（提交或回滚均清除，下次访问以数据库为准重新加载），无事务时立即执行
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onInventoryEvict(SlotInventoryEvictEvent event) {
+        evict(event.getScheduleId());
+    }
+
+    /**
+     * 与数据库对账
+     * 持有分布式锁时执行：先找出Redis剩余号源/状态与数据库不一致的排班，等待一段时间后再次比对，
+     * 仍不一致且Redis剩余号源未变化（期间无挂号活动）时才以数据库为准覆盖
+     */
+    @Override
+    public int reconcile() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, token, RECONCILE_LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("号源库存对账正在其他节点执行，跳过");
+            return 0;
+        }
+        try {
+            List<Long> scheduleIds = scheduleMapper.selectIdsFromDate(LocalDate.now());
+            Map<Long, String> drifted = new HashMap<>();
+            for (Long scheduleId : scheduleIds) {
+                String remaining = findDrift(scheduleId);
+                if (remaining != null) {
+                    drifted.put(scheduleId, remaining);
+                }
+            }
+            if (drifted.isEmpty()) {
+                log.info("号源库存对账完成 - 共 {} 个排班，无差异", scheduleIds.size());
+                return 0;
+            }
+
+            Thread.sleep(RECONCILE_GRACE_MILLIS);
+
+            int count = 0;
+            for (Map.Entry<Long, String> entry : drifted.entrySet()) {
+                Long scheduleId = entry.getKey();
+                try {
+                    String remaining = findDrift(scheduleId);
+                    // 两次采样之间Redis有变化说明仍有挂号活动，留待下次对账
+                    if (remaining == null || !remaining.equals(entry.getValue())) {
+                        continue;
+                    }
+                    if (load(scheduleId, "=" + remaining)) {
+                        log.warn("号源库存与数据库不一致，已修正 - 排班ID: {}, Redis剩余号源: {}", scheduleId, remaining);
+                        count++;
+                    }
+                } catch (Exception e) {
+                    log.error("号源库存对账失败 - 排班ID: {}, 错误: {}", scheduleId, e.getMessage());
+                }
+            }
+            log.info("号源库存对账完成 - 共 {} 个排班，差异: {}，已修正: {}", scheduleIds.size(), drifted.size(), count);
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(RECONCILE_LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 比对单个排班的Redis库存与数据库
+     * @return 不一致时返回Redis中的剩余号源数，一致或库存未加载时返回null
+     */
+    private String findDrift(Long scheduleId) {
+        Schedule schedule = scheduleMapper.selectById(scheduleId);
+        if (schedule == null) {
+            return null;
+        }
+        List<Object> values = redisTemplate.opsForHash().multiGet(getKeys(scheduleId).get(0),
+                Arrays.<Object>asList(FIELD_REMAINING, FIELD_STATUS));
+        Object remaining = values.get(0);
+        if (remaining == null) {
+            // 未加载的库存在首次挂号时按需加载，不在对账中处理
+            return null;
+        }
+        boolean same = String.valueOf(schedule.getRemainingNumber()).equals(remaining)
+                && String.valueOf(schedule.getStatus()).equals(values.get(1));
+        return same ? null : remaining.toString();
+    }
+
+    /**
+     * 应用启动完成后加载缺失的库存（不覆盖已存在的库存，避免抹掉其他节点已占用但尚未落库的号源）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadMissingOnStartup() {
+        try {
+            List<Long> scheduleIds = scheduleMapper.selectIdsFromDate(LocalDate.now());
+            int loaded = 0;
+            for (Long scheduleId : scheduleIds) {
+                try {
+                    if (load(scheduleId, LOAD_IF_ABSENT)) {
+                        loaded++;
+                    }
+                } catch (Exception e) {
+                    log.error("号源库存加载失败 - 排班ID: {}, 错误: {}", scheduleId, e.getMessage());
+                }
+            }
+            log.info("启动时号源库存加载完成 - 共 {} 个排班，新加载: {}", scheduleIds.size(), loaded);
+        } catch (Exception e) {
+            log.error("启动时号源库存加载失败，将在首次挂号时按需加载 - 错误: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 获取库存Key（使用{scheduleId}作为hash tag，保证集群模式下两个Key落在同一节点）
+     */
+    private List<String> getKeys(Long scheduleId) {
+        String hashKey = INVENTORY_KEY_PREFIX + "{" + scheduleId + "}";
+        return Arrays.asList(hashKey, hashKey + ":patients");
+    }
+
+    /**
+     * 库存过期时间：就诊日期次日零点后失效
+     */
+    private long getTtlSeconds(LocalDate scheduleDate) {
+        LocalDateTime expireAt = scheduleDate.plusDays(2).atStartOfDay();
+        long seconds = Duration.between(LocalDateTime.now(), expireAt).getSeconds();
+        return Math.max(seconds, 3600L);
+    }
+}
@@ -2,11 +2,18 @@ package com.hospital.registration.service.impl;
 
 import com.hospital.registration.common.Constants;
 import com.hospital.registration.service.TokenService;
+import com.hospital.registration.utils.LocalCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @title: TokenServiceImpl
@@ -14,15 +21,26 @@ import java.util.concurrent.TimeUnit;
  * @date: 2026/2/21
  * @version: 1.0
  * @description: Token管理服务实现类
+ * 有效Token在本地近缓存中保留30秒，校验命中时不访问Redis；登出或重新登录时通过Redis发布订阅通知所有节点失效，
+ * 订阅消息丢失时吊销最迟在本地缓存过期后生效。
  */
 @Slf4j
 @Service
-public class TokenServiceImpl implements TokenService {
+public class TokenServiceImpl implements TokenService, MessageListener {
 
     private final StringRedisTemplate redisTemplate;
 
     private static final String TOKEN_PREFIX_ADMIN = "token:admin:";
     private static final String TOKEN_PREFIX_APP = "token:app:";
+    public static final String REVOKE_CHANNEL = "token:revoke";
+
+    // 本地近缓存：Token的Key -> Token值
+    private final LocalCache<String, String> sessionCache = new LocalCache<>(30_000L, 20000);
+
+    // 吊销传播延迟统计（毫秒）
+    private final AtomicLong revokeReceivedCount = new AtomicLong();
+    private final AtomicLong revokeLatencyTotal = new AtomicLong();
+    private final AtomicLong revokeLatencyMax = new AtomicLong();
 
     public TokenServiceImpl(StringRedisTemplate redisTemplate) {
         this.redisTemplate = redisTemplate;
@@ -39,6 +57,8 @@ public class TokenServiceImpl implements TokenService {
         String key = getKey(userId, isAdmin);
         long expireTime = Constants.Jwt.EXPIRATION;
         redisTemplate.opsForValue().set(key, token, expireTime, TimeUnit.MILLISECONDS);
+        // 重新登录后旧Token失效，通知各节点
+        publishRevoke(key);
         log.info("Token已保存 - userId: {}, isAdmin: {}", userId, isAdmin);
     }
 
@@ -51,9 +71,21 @@ public class TokenServiceImpl implements TokenService {
      */
     @Override
     public boolean validateToken(Long userId, String token, boolean isAdmin) {
+        if (token == null) {
+            return false;
+        }
         String key = getKey(userId, isAdmin);
+        if (token.equals(sessionCache.get(key))) {
+            return true;
+        }
+        // 未命中或与本地值不一致（可能刚在其他节点重新登录），以Redis为准
         String storedToken = redisTemplate.opsForValue().get(key);
-        return token != null && token.equals(storedToken);
+        if (storedToken == null) {
+            sessionCache.invalidate(key);
+            return false;
+        }
+        sessionCache.put(key, storedToken);
+        return token.equals(storedToken);
     }
     /**
      * 删除Token
@@ -64,9 +96,61 @@ public class TokenServiceImpl implements TokenService {
     public void removeToken(Long userId, boolean isAdmin) {
         String key = getKey(userId, isAdmin);
         redisTemplate.delete(key);
+        publishRevoke(key);
         log.info("Token已删除 - userId: {}, isAdmin: {}", userId, isAdmin);
     }
 
+    /**
+     * 本地近缓存与吊销传播统计
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        long received = revokeReceivedCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", sessionCache.size());
+        stats.put("hitCount", sessionCache.getHitCount());
+        stats.put("missCount", sessionCache.getMissCount());
+        stats.put("hitRate", sessionCache.getHitRate());
+        stats.put("revokeReceived", received);
+        stats.put("revokeLatencyAvgMillis", received == 0 ? 0 : revokeLatencyTotal.get() / received);
+        stats.put("revokeLatencyMaxMillis", revokeLatencyMax.get());
+        return stats;
+    }
+
+    /**
+     * 接收吊销通知，消息格式：Token的Key|发布时间戳
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.lastIndexOf('|');
+        String key = index > 0 ? body.substring(0, index) : body;
+        sessionCache.invalidate(key);
+        if (index > 0) {
+            try {
+                long latency = Math.max(0, System.currentTimeMillis() - Long.parseLong(body.substring(index + 1)));
+                revokeReceivedCount.incrementAndGet();
+                revokeLatencyTotal.addAndGet(latency);
+                revokeLatencyMax.accumulateAndGet(latency, Math::max);
+            } catch (NumberFormatException e) {
+                log.warn("Token吊销消息格式错误: {}", body);
+            }
+        }
+        log.debug("收到Token吊销通知 - Key: {}", key);
+    }
+
+    /**
+     * 本节点立即失效，并通知其他节点
+     */
+    private void publishRevoke(String key) {
+        sessionCache.invalidate(key);
+        try {
+            redisTemplate.convertAndSend(REVOKE_CHANNEL, key + "|" + System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Token吊销通知发送失败，其他节点将在本地缓存过期后生效 - Key: {}, 错误: {}", key, e.getMessage());
+        }
+    }
+
     /**
      * 获取Token的Key
      * @param userId 用户ID
@@ -1,15 +1,18 @@
 package com.hospital.registration.service.impl;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hospital.registration.cache.PermissionCache;
 import com.hospital.registration.common.BusinessException;
 import com.hospital.registration.common.Gender;
 import com.hospital.registration.common.ResultCode;
+import com.hospital.registration.config.LoginConfig;
 import com.hospital.registration.dto.*;
 import com.hospital.registration.dto.app.AppLoginDTO;
 import com.hospital.registration.dto.app.AppRegisterDTO;
 import com.hospital.registration.entity.Role;
 import com.hospital.registration.entity.User;
 import com.hospital.registration.entity.UserRole;
+import com.hospital.registration.event.PermissionChangedEvent;
 import com.hospital.registration.mapper.UserMapper;
 import com.hospital.registration.mapper.UserRoleMapper;
 import com.hospital.registration.service.PermissionService;
@@ -18,15 +21,30 @@ import com.hospital.registration.service.UserService;
 import com.hospital.registration.utils.JwtUtil;
 import com.hospital.registration.utils.PasswordUtil;
 import com.hospital.registration.vo.UserVO;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @title: UserServiceImpl
@@ -39,12 +57,34 @@ import java.util.Map;
 @Service
 public class UserServiceImpl implements UserService {
 
+    // 登录阶段
+    private static final String STAGE_LOOKUP = "lookup";
+    private static final String STAGE_VERIFY = "verify";
+    private static final String STAGE_AUTHORITY = "authority";
+    private static final String STAGE_TOKEN = "token";
+    private static final long AUTHORITY_WAIT_SECONDS = 5L;
+
     private final UserMapper userMapper;
     private final PasswordUtil passwordUtil;
     private final JwtUtil jwtUtil;
     private final UserRoleMapper userRoleMapper;
     private final TokenService tokenService;
     private final PermissionService permissionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LoginConfig loginConfig;
+
+    // 登录辅助线程池：与BCrypt校验并行预取角色权限，后台重新加密密码；队列满时由调用线程执行
+    private final ThreadPoolExecutor loginExecutor;
+
+    // 登录统计
+    private final LongAdder loginSuccessCount = new LongAdder();
+    private final LongAdder loginFailureCount = new LongAdder();
+    private final LongAdder rehashCount = new LongAdder();
+    private final Map<String, StageTimer> stageTimers = Map.of(
+            STAGE_LOOKUP, new StageTimer(),
+            STAGE_VERIFY, new StageTimer(),
+            STAGE_AUTHORITY, new StageTimer(),
+            STAGE_TOKEN, new StageTimer());
 
     /**
      * 构造器注入
@@ -54,13 +94,35 @@ public class UserServiceImpl implements UserService {
                            JwtUtil jwtUtil,
                            UserRoleMapper userRoleMapper,
                            TokenService tokenService,
-                           PermissionService permissionService) {
+                           PermissionService permissionService,
+                           ApplicationEventPublisher eventPublisher,
+                           LoginConfig loginConfig) {
         this.userMapper = userMapper;
         this.passwordUtil = passwordUtil;
         this.jwtUtil = jwtUtil;
         this.userRoleMapper = userRoleMapper;
         this.tokenService = tokenService;
         this.permissionService = permissionService;
+        this.eventPublisher = eventPublisher;
+        this.loginConfig = loginConfig;
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = loginConfig.getWorkerThreads();
+        this.loginExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "login-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 关闭登录辅助线程池
+     */
+    @PreDestroy
+    public void shutdownLoginExecutor() {
+        loginExecutor.shutdown();
     }
 
     /**
@@ -111,6 +173,7 @@ public class UserServiceImpl implements UserService {
 
         userRoleMapper.insert(userRole);
         log.info("用户注册成功 - ID: {}, 用户名: {}", user.getId(), user.getUsername());
+        eventPublisher.publishEvent(new PermissionChangedEvent(user.getId()));
 
         // 6. 转换为VO返回
         return convertToVO(user);
@@ -124,38 +187,52 @@ public class UserServiceImpl implements UserService {
         log.info("用户登录 - 用户名: {}", loginDTO.getUsername());
 
         // 1. 查询用户
+        long startTime = System.nanoTime();
         User user = userMapper.selectByUsername(loginDTO.getUsername());
+        startTime = recordStage(STAGE_LOOKUP, startTime);
         if (user == null) {
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.USER_NOT_EXIST);
         }
 
-        // 2. 验证密码
+        // 2. 预取角色和权限（走权限缓存），与密码校验并行
+        Future<PermissionCache.UserAuthority> authorityFuture =
+                loginExecutor.submit(() -> permissionService.getUserAuthority(user.getId()));
+
+        // 3. 验证密码
         boolean isPasswordCorrect = passwordUtil.matches(loginDTO.getPassword(), user.getPassword());
+        startTime = recordStage(STAGE_VERIFY, startTime);
         if (!isPasswordCorrect) {
+            authorityFuture.cancel(false);
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.PASSWORD_ERROR);
         }
 
-        // 3. 检查账号状态
+        // 4. 检查账号状态
         if (user.getStatus() == 0) {
+            authorityFuture.cancel(false);
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.FORBIDDEN.getCode(), "账号已被禁用");
         }
+        rehashIfNeeded(user, loginDTO.getPassword());
 
-        // 4. 生成Token
+        // 5. 生成并缓存Token
         String token = jwtUtil.generateToken(user.getId(), user.getUsername());
-
-        // 5. 缓存Token
         tokenService.saveToken(user.getId(), token, true);
+        startTime = recordStage(STAGE_TOKEN, startTime);
+
+        // 6. 获取预取的角色和权限
+        PermissionCache.UserAuthority authority = awaitAuthority(user.getId(), authorityFuture);
+        recordStage(STAGE_AUTHORITY, startTime);
+        loginSuccessCount.increment();
         log.info("用户登录成功 - ID: {}, 用户名: {}", user.getId(), user.getUsername());
 
-        // 6. 返回Token和用户信息
+        // 7. 返回Token和用户信息
         Map<String, Object> result = new HashMap<>();
         result.put("token", token);
-        // 获取用户角色和权限
         UserVO userVO = convertToVO(user);
-        List<String> roleCodes = userRoleMapper.selectRoleCodesByUserId(user.getId());
-        List<String> permissions = permissionService.getUserPermissionCodes(user.getId());
-        userVO.setRoleCodes(roleCodes);
-        userVO.setPermissions(permissions);
+        userVO.setRoleCodes(authority.getRoleCodes());
+        userVO.setPermissions(new ArrayList<>(authority.getPermissionCodes()));
         result.put("user", userVO);
 
         return result;
@@ -182,6 +259,96 @@ public class UserServiceImpl implements UserService {
         return userVO;
     }
 
+    /**
+     * 等待预取的角色权限，预取失败或超时时在当前线程重新加载
+     */
+    private PermissionCache.UserAuthority awaitAuthority(Long userId, Future<PermissionCache.UserAuthority> future) {
+        try {
+            return future.get(AUTHORITY_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultCode.FAIL.getCode(), "登录失败，请稍后重试");
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("预取用户权限失败，改为同步加载 - userId: {}, 错误: {}", userId, e.getMessage());
+            future.cancel(false);
+            return permissionService.getUserAuthority(userId);
+        }
+    }
+
+    /**
+     * 密码哈希强度低于目标强度时后台重新加密（不影响本次登录响应）
+     * 以登录时读到的哈希为条件更新，期间密码被修改或重置时放弃升级
+     */
+    private void rehashIfNeeded(User user, String rawPassword) {
+        if (!Boolean.TRUE.equals(loginConfig.getRehashOnLogin()) || !passwordUtil.needsRehash(user.getPassword())) {
+            return;
+        }
+        loginExecutor.execute(() -> {
+            try {
+                if (userMapper.updatePasswordIfMatch(user.getId(), passwordUtil.encode(rawPassword), user.getPassword()) == 0) {
+                    log.info("密码已被修改，放弃哈希升级 - userId: {}", user.getId());
+                    return;
+                }
+                rehashCount.increment();
+                log.info("密码哈希已升级 - userId: {}", user.getId());
+            } catch (Exception e) {
+                log.error("密码哈希升级失败 - userId: {}, 错误: {}", user.getId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 记录登录阶段耗时，返回当前时间作为下一阶段起点
+     */
+    private long recordStage(String stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * 登录吞吐及各阶段耗时统计
+     */
+    @Override
+    public Map<String, Object> getLoginStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("successCount", loginSuccessCount.sum());
+        stats.put("failureCount", loginFailureCount.sum());
+        stats.put("rehashCount", rehashCount.sum());
+        stats.put("bcryptStrength", loginConfig.getBcryptStrength());
+        for (String stage : List.of(STAGE_LOOKUP, STAGE_VERIFY, STAGE_AUTHORITY, STAGE_TOKEN)) {
+            stats.put(stage, stageTimers.get(stage).toMap());
+        }
+        stats.put("workerActive", loginExecutor.getActiveCount());
+        stats.put("workerQueued", loginExecutor.getQueue().size());
+        return stats;
+    }
+
+    /**
+     * 阶段耗时累计
+     */
+    private static class StageTimer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long total = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", total);
+            map.put("avgMillis", total == 0 ? 0 : totalNanos.sum() / total / 1_000_000.0);
+            map.put("maxMillis", maxNanos.get() / 1_000_000.0);
+            return map;
+        }
+    }
+
     /**
      * 根据角色编码获取用户列表
      */
@@ -318,6 +485,7 @@ public class UserServiceImpl implements UserService {
         userMapper.updateById(updateUser);
 
         log.info("删除用户成功 - ID: {}", id);
+        eventPublisher.publishEvent(new PermissionChangedEvent(id));
     }
 
     /**
@@ -327,8 +495,19 @@ public class UserServiceImpl implements UserService {
     @Transactional(rollbackFor = Exception.class)
     public void batchDeleteUser(List<Long> ids) {
         log.info("批量删除用户 - ids: {}", ids);
-        for (Long id : ids) {
-            deleteUser(id);
+        Set<Long> idSet = new LinkedHashSet<>(ids);
+        if (idSet.isEmpty()) {
+            return;
+        }
+        // 一条UPDATE完成逻辑删除，影响行数不足说明含有不存在或已删除的用户，整体回滚
+        int affected = userMapper.batchLogicDelete(idSet);
+        if (affected != idSet.size()) {
+            throw new BusinessException(ResultCode.USER_NOT_EXIST);
+        }
+
+        log.info("批量删除用户成功 - 数量: {}", affected);
+        for (Long id : idSet) {
+            eventPublisher.publishEvent(new PermissionChangedEvent(id));
         }
     }
 
@@ -389,18 +568,29 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ResultCode.USER_NOT_EXIST);
         }
 
-        // 先删除原有角色
-        userRoleMapper.deleteByUserId(userId);
-
-        // 批量插入新角色
-        for (Long roleId : roleIds) {
-            UserRole userRole = new UserRole();
-            userRole.setUserId(userId);
-            userRole.setRoleId(roleId);
-            userRoleMapper.insert(userRole);
+        // 与现有关联比对，只删除移除项、只插入新增项
+        Set<Long> targetIds = new LinkedHashSet<>(roleIds);
+        Set<Long> currentIds = new HashSet<>(userRoleMapper.selectRoleIdsByUserId(userId));
+        List<Long> removedIds = new ArrayList<>();
+        for (Long roleId : currentIds) {
+            if (!targetIds.contains(roleId)) {
+                removedIds.add(roleId);
+            }
+        }
+        targetIds.removeAll(currentIds);
+        if (removedIds.isEmpty() && targetIds.isEmpty()) {
+            log.info("用户角色未变化 - userId: {}", userId);
+            return;
+        }
+        if (!removedIds.isEmpty()) {
+            userRoleMapper.deleteByUserIdAndRoleIds(userId, removedIds);
+        }
+        if (!targetIds.isEmpty()) {
+            userRoleMapper.batchInsert(userId, targetIds);
         }
 
         log.info("分配角色成功 - userId: {}", userId);
+        eventPublisher.publishEvent(new PermissionChangedEvent(userId));
     }
 
     /**
@@ -495,27 +685,34 @@ public class UserServiceImpl implements UserService {
         log.info("患者端登录 - 手机号: {}", loginDTO.getPhone());
 
         // 1. 根据手机号查询用户
+        long startTime = System.nanoTime();
         User user = userMapper.selectByPhone(loginDTO.getPhone());
+        startTime = recordStage(STAGE_LOOKUP, startTime);
         if (user == null) {
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.USER_NOT_EXIST.getCode(), "该手机号未注册");
         }
 
         // 2. 验证密码
         boolean isPasswordCorrect = passwordUtil.matches(loginDTO.getPassword(), user.getPassword());
+        startTime = recordStage(STAGE_VERIFY, startTime);
         if (!isPasswordCorrect) {
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.PASSWORD_ERROR);
         }
 
         // 3. 检查账号状态
         if (user.getStatus() == 0) {
+            loginFailureCount.increment();
             throw new BusinessException(ResultCode.FORBIDDEN.getCode(), "账号已被禁用");
         }
+        rehashIfNeeded(user, loginDTO.getPassword());
 
-        // 4. 生成Token
+        // 4. 生成并缓存Token
         String token = jwtUtil.generateToken(user.getId(), user.getUsername());
-
-        // 5. 缓存Token
         tokenService.saveToken(user.getId(), token, false);
+        recordStage(STAGE_TOKEN, startTime);
+        loginSuccessCount.increment();
         log.info("患者端登录成功 - ID: {}, 手机号: {}", user.getId(), loginDTO.getPhone());
 
         // 6. 返回Token和用户信息
@@ -572,6 +769,7 @@ public class UserServiceImpl implements UserService {
         userRoleMapper.insert(userRole);
 
         log.info("患者端注册成功 - ID: {}, 手机号: {}", user.getId(), registerDTO.getPhone());
+        eventPublisher.publishEvent(new PermissionChangedEvent(user.getId()));
 
         // 8. 转换为VO返回
         return convertToVO(user);
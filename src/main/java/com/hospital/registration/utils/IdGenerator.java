@@ -0,0 +1,26 @@
+package com.hospital.registration.utils;
+
+/**
+ * @title: IdGenerator
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 业务编号生成器接口（挂号单号、交易流水号等统一由此生成）
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成全局唯一ID
+     * @return ID
+     */
+    long nextId();
+
+    /**
+     * 生成带前缀的业务编号
+     * @param prefix 前缀，如 REG、PAY
+     * @return 业务编号
+     */
+    default String nextNo(String prefix) {
+        return prefix + nextId();
+    }
+}
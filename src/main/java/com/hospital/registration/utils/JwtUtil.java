@@ -2,6 +2,7 @@ package com.hospital.registration.utils;
 
 import com.hospital.registration.common.Constants;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -25,6 +26,13 @@ import java.util.Map;
 @Component
 public class JwtUtil {
 
+    // 签名密钥和解析器只构建一次，线程安全可复用
+    private static final Key KEY = Keys.hmacShaKeyFor(Constants.Jwt.SECRET.getBytes(StandardCharsets.UTF_8));
+    private static final JwtParser PARSER = Jwts.parserBuilder().setSigningKey(KEY).build();
+
+    // 已验签Token缓存：同一Token在缓存期内不再重复做HMAC校验（登出等吊销仍由TokenService判定）
+    private final LocalCache<String, Claims> verifiedCache = new LocalCache<>(10 * 60 * 1000L, 10000);
+
     /**
      * 生成JWT Token
      * @param userId 用户ID
@@ -42,15 +50,12 @@ public class JwtUtil {
         claims.put("userId", userId);
         claims.put("username", username);
 
-        // 生成密钥
-        Key key = Keys.hmacShaKeyFor(Constants.Jwt.SECRET.getBytes(StandardCharsets.UTF_8));
-
         // 生成Token
         String token = Jwts.builder()
                 .setClaims(claims)                          // 设置载荷
                 .setIssuedAt(now)                          // 签发时间
                 .setExpiration(expiration)                 // 过期时间
-                .signWith(key, SignatureAlgorithm.HS256)   // 签名算法
+                .signWith(KEY, SignatureAlgorithm.HS256)   // 签名算法
                 .compact();
 
         log.debug("生成Token成功 - userId: {}, username: {}", userId, username);
@@ -63,17 +68,21 @@ public class JwtUtil {
      * @return Claims对象（包含用户信息）
      */
     public Claims parseToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        // 命中已验签缓存且未过期时直接返回
+        Claims cached = verifiedCache.get(token);
+        if (cached != null) {
+            if (cached.getExpiration() == null || cached.getExpiration().after(new Date())) {
+                return cached;
+            }
+            verifiedCache.invalidate(token);
+        }
         try {
-            // 生成密钥
-            Key key = Keys.hmacShaKeyFor(Constants.Jwt.SECRET.getBytes(StandardCharsets.UTF_8));
-
             // 解析Token
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
+            Claims claims = PARSER.parseClaimsJws(token).getBody();
+            verifiedCache.put(token, claims);
             return claims;
         } catch (Exception e) {
             log.error("Token解析失败: {}", e.getMessage());
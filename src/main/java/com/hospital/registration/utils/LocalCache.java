@@ -0,0 +1,208 @@
+package com.hospital.registration.utils;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * @title: LocalCache
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 进程内TTL缓存（带容量上限和命中统计），用作Redis前面的一级缓存
+ * 同一key并发未命中时只有一个线程执行加载，其余线程等待其结果；加载期间发生失效时，加载结果只返回给调用方，不写入缓存。
+ */
+public class LocalCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> store = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxSize;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    // 正在加载的key
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    // 失效代数，每次失效递增；加载前后代数不一致说明加载期间有失效，结果可能已过时
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param ttlMillis 过期时间(毫秒)
+     * @param maxSize 最大条目数，超出时先清理过期条目，仍超出则淘汰最早写入的一批（约1/10）
+     */
+    public LocalCache(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取缓存，未命中或已过期返回null
+     */
+    public V get(K key) {
+        Entry<V> entry = store.get(key);
+        if (entry == null || entry.isExpired()) {
+            if (entry != null) {
+                store.remove(key, entry);
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * 获取缓存，未命中时调用loader加载并写入（loader返回null时不缓存）
+     * 同一key同时只有一个线程执行loader，loader抛出的异常传给所有等待的线程
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        long loadGeneration = generation.get();
+        try {
+            value = loader.apply(key);
+            if (value != null && generation.get() == loadGeneration) {
+                put(key, value);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 写入缓存
+     */
+    public void put(K key, V value) {
+        if (store.size() >= maxSize && !store.containsKey(key)) {
+            evictExpired();
+            if (store.size() >= maxSize) {
+                evictOldest(Math.max(1, maxSize / 10));
+            }
+        }
+        store.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 删除指定缓存
+     */
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        loading.remove(key);
+        store.remove(key);
+    }
+
+    /**
+     * 删除满足条件的缓存
+     */
+    public void invalidateIf(Predicate<K> predicate) {
+        generation.incrementAndGet();
+        loading.keySet().removeIf(predicate);
+        store.keySet().removeIf(predicate);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        loading.clear();
+        store.clear();
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 命中率(0-1)
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0D : (double) hits / total;
+    }
+
+    /**
+     * 等待其他线程的加载结果，加载失败时抛出原异常
+     */
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<K, Entry<V>> e : store.entrySet()) {
+            if (e.getValue().expireAt <= now) {
+                store.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * 淘汰过期时间最早（即最早写入）的count个条目
+     */
+    private void evictOldest(int count) {
+        // 大顶堆保留当前最早的count个条目
+        PriorityQueue<Map.Entry<K, Entry<V>>> oldest = new PriorityQueue<>(count + 1,
+                Comparator.comparingLong((Map.Entry<K, Entry<V>> e) -> e.getValue().expireAt).reversed());
+        for (Map.Entry<K, Entry<V>> e : store.entrySet()) {
+            oldest.offer(Map.entry(e.getKey(), e.getValue()));
+            if (oldest.size() > count) {
+                oldest.poll();
+            }
+        }
+        for (Map.Entry<K, Entry<V>> e : oldest) {
+            store.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired() {
+            return expireAt <= System.currentTimeMillis();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.hospital.registration.utils;
 
+import com.hospital.registration.config.LoginConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -15,8 +16,15 @@ import org.springframework.stereotype.Component;
 @Component
 public class PasswordUtil {
 
-    // BCrypt加密器
-    private static final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    // BCrypt加密器（强度由 hospital.login.bcrypt-strength 配置）
+    private final BCryptPasswordEncoder encoder;
+
+    /**
+     * 构造器注入
+     */
+    public PasswordUtil(LoginConfig loginConfig) {
+        this.encoder = new BCryptPasswordEncoder(loginConfig.getBcryptStrength());
+    }
 
     /**
      * 加密密码
@@ -40,5 +48,19 @@ public class PasswordUtil {
         log.debug("密码验证结果: {}", result);
         return result;
     }
+
+    /**
+     * 判断密文强度是否低于目标强度，需要重新加密
+     * @param encodedPassword 加密后的密码（密文）
+     * @return true-需要重新加密
+     */
+    public boolean needsRehash(String encodedPassword) {
+        try {
+            return encoder.upgradeEncoding(encodedPassword);
+        } catch (IllegalArgumentException e) {
+            log.warn("密码密文格式不是BCrypt，跳过强度检查");
+            return false;
+        }
+    }
 }
 
@@ -0,0 +1,79 @@
+package com.hospital.registration.utils;
+
+import com.hospital.registration.config.IdGeneratorConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+
+/**
+ * @title: SnowflakeIdGenerator
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 雪花算法ID生成器
+ * 41位毫秒时间戳 + 10位机器ID + 12位序列号，单节点每毫秒可生成4096个ID。
+ * 时钟回拨时沿用上次时间戳继续递增序列号，不阻塞也不产生重复ID。
+ */
+@Slf4j
+@Component
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    // 起始时间 2026-01-01 00:00:00 (UTC+8)
+    private static final long EPOCH = 1767196800000L;
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_ID_BITS + SEQUENCE_BITS;
+
+    private final long workerId;
+    private long lastTimestamp = -1L;
+    private long sequence = 0L;
+
+    /**
+     * 构造器注入
+     */
+    public SnowflakeIdGenerator(IdGeneratorConfig idGeneratorConfig) {
+        long workerId = idGeneratorConfig.getWorkerId() != null ? idGeneratorConfig.getWorkerId() : deriveWorkerId();
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("机器ID必须在0-" + MAX_WORKER_ID + "之间: " + workerId);
+        }
+        this.workerId = workerId;
+        log.info("雪花ID生成器初始化 - 机器ID: {}", workerId);
+    }
+
+    /**
+     * 生成ID
+     */
+    @Override
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 当前毫秒序列号用尽，借用下一毫秒
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH) << TIMESTAMP_SHIFT) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 未配置机器ID时根据本机地址推算
+     */
+    private static long deriveWorkerId() {
+        try {
+            byte[] address = InetAddress.getLocalHost().getAddress();
+            long workerId = ((address[address.length - 2] & 0xFFL) << 8 | (address[address.length - 1] & 0xFFL)) & MAX_WORKER_ID;
+            log.warn("未配置hospital.id.worker-id，根据本机地址推算机器ID: {}，多节点部署时请显式配置", workerId);
+            return workerId;
+        } catch (Exception e) {
+            log.warn("获取本机地址失败，机器ID使用0 - 错误: {}", e.getMessage());
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hospital.registration.vo.app;
+
+import lombok.Data;
+
+/**
+ * @title: BookingTicketVO
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 挂号凭证VO
+ */
+@Data
+public class BookingTicketVO {
+
+    // 挂号凭证号
+    private String ticketNo;
+
+    // 处理状态：PROCESSING-处理中，SUCCESS-挂号成功，FAILED-挂号失败
+    private String status;
+
+    // 挂号ID（成功后返回）
+    private Long registrationId;
+
+    // 挂号单号（成功后返回）
+    private String registrationNo;
+
+    // 失败原因
+    private String message;
+}
@@ -0,0 +1,16 @@
+-- 消息发件箱表（业务数据与待发送消息在同一事务中写入，由中继批量投递到RabbitMQ）
+CREATE TABLE IF NOT EXISTS `mq_outbox` (
+                                      `id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+                                      `exchange` VARCHAR(100) NOT NULL COMMENT '交换机',
+                                      `routing_key` VARCHAR(100) NOT NULL COMMENT '路由键',
+                                      `message_key` VARCHAR(64) DEFAULT NULL COMMENT '业务键，如挂号单号',
+                                      `payload_type` VARCHAR(200) NOT NULL COMMENT '消息体类型',
+                                      `payload` TEXT NOT NULL COMMENT '消息体JSON',
+                                      `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-待发送，1-已发送',
+                                      `retry_count` INT NOT NULL DEFAULT 0 COMMENT '发送失败次数',
+                                      `next_retry_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次发送时间',
+                                      `last_error` VARCHAR(500) DEFAULT NULL COMMENT '最近一次发送失败原因',
+                                      `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                      `sent_time` DATETIME DEFAULT NULL COMMENT '发送确认时间',
+                                      INDEX idx_status_next_retry (`status`, `next_retry_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消息发件箱表';
@@ -0,0 +1,3 @@
+-- 挂号表增加异步挂号凭证号，消息重复投递时按凭证号保证只落库一次
+ALTER TABLE registration ADD COLUMN booking_ticket_no VARCHAR(50) NULL COMMENT '异步挂号凭证号（同步挂号为空）';
+ALTER TABLE registration ADD UNIQUE INDEX uk_booking_ticket_no (`booking_ticket_no`);
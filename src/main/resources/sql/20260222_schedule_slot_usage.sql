@@ -0,0 +1,18 @@
+-- 排班细分时段已预约数表（替代对registration的GROUP BY统计）
+CREATE TABLE IF NOT EXISTS `schedule_slot_usage` (
+                                      `schedule_id` BIGINT NOT NULL COMMENT '排班ID',
+                                      `detail_time_slot` VARCHAR(20) NOT NULL COMMENT '细分时段，如 M_0800',
+                                      `booked_count` INT NOT NULL DEFAULT 0 COMMENT '已预约数',
+                                      `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                      PRIMARY KEY (`schedule_id`, `detail_time_slot`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='排班细分时段已预约数表';
+
+-- 根据现有挂号记录回填
+INSERT INTO `schedule_slot_usage` (`schedule_id`, `detail_time_slot`, `booked_count`)
+SELECT `schedule_id`, `detail_time_slot`, COUNT(*)
+FROM `registration`
+WHERE `status` != 'CANCELLED'
+  AND `deleted` = 0
+  AND `detail_time_slot` IS NOT NULL
+GROUP BY `schedule_id`, `detail_time_slot`
+ON DUPLICATE KEY UPDATE `booked_count` = VALUES(`booked_count`);
@@ -0,0 +1,3 @@
+-- 系统监控（缓存命中统计等）
+INSERT INTO permission (parent_id, permission_code, permission_name, permission_type, sort_order, status, create_time, update_time, deleted) VALUES
+    (1, 'system:monitor', '系统监控', 'MENU', 7, 1, NOW(), NOW(), 0);
@@ -103,6 +103,7 @@ CREATE TABLE IF NOT EXISTS `registration` (
                                               `registration_date` DATE NOT NULL COMMENT '挂号日期',
                                               `time_slot` VARCHAR(20) NOT NULL COMMENT '就诊时间段',
                                               `detail_time_slot` VARCHAR(20) COMMENT '细分时段，如 M_0800',
+                                              `booking_ticket_no` VARCHAR(50) NULL COMMENT '异步挂号凭证号（同步挂号为空）',
                                               `queue_number` INT COMMENT '排队号',
                                               `registration_fee` DECIMAL(10,2) COMMENT '挂号费',
                                               `status` VARCHAR(20) NOT NULL COMMENT '状态：PENDING/CALLED/CONSULTING/COMPLETED/CANCELLED/MISSED',
@@ -113,6 +114,7 @@ CREATE TABLE IF NOT EXISTS `registration` (
                                               `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
                                               `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
                                               INDEX idx_registration_no (`registration_no`),
+                                              UNIQUE INDEX uk_booking_ticket_no (`booking_ticket_no`),
                                               INDEX idx_patient_id (`patient_id`),
                                               INDEX idx_doctor_id (`doctor_id`),
                                               INDEX idx_registration_date (`registration_date`),
@@ -398,6 +400,32 @@ CREATE TABLE IF NOT EXISTS `ai_consultation_message` (
                                                          INDEX idx_session_id (`session_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI问诊消息记录表';
 
+-- 排班细分时段已预约数表
+CREATE TABLE IF NOT EXISTS `schedule_slot_usage` (
+                                                     `schedule_id` BIGINT NOT NULL COMMENT '排班ID',
+                                                     `detail_time_slot` VARCHAR(20) NOT NULL COMMENT '细分时段，如 M_0800',
+                                                     `booked_count` INT NOT NULL DEFAULT 0 COMMENT '已预约数',
+                                                     `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+                                                     PRIMARY KEY (`schedule_id`, `detail_time_slot`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='排班细分时段已预约数表';
+
+-- 消息发件箱表
+CREATE TABLE IF NOT EXISTS `mq_outbox` (
+                                         `id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+                                         `exchange` VARCHAR(100) NOT NULL COMMENT '交换机',
+                                         `routing_key` VARCHAR(100) NOT NULL COMMENT '路由键',
+                                         `message_key` VARCHAR(64) DEFAULT NULL COMMENT '业务键，如挂号单号',
+                                         `payload_type` VARCHAR(200) NOT NULL COMMENT '消息体类型',
+                                         `payload` TEXT NOT NULL COMMENT '消息体JSON',
+                                         `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-待发送，1-已发送',
+                                         `retry_count` INT NOT NULL DEFAULT 0 COMMENT '发送失败次数',
+                                         `next_retry_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次发送时间',
+                                         `last_error` VARCHAR(500) DEFAULT NULL COMMENT '最近一次发送失败原因',
+                                         `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+                                         `sent_time` DATETIME DEFAULT NULL COMMENT '发送确认时间',
+                                         INDEX idx_status_next_retry (`status`, `next_retry_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='消息发件箱表';
+
 -- =============================================
 -- 第六部分：初始化数据
 -- =============================================
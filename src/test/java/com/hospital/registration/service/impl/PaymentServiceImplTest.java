@@ -0,0 +1,120 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.PaymentStatus;
+import com.hospital.registration.common.RegistrationStatus;
+import com.hospital.registration.entity.Payment;
+import com.hospital.registration.entity.Registration;
+import com.hospital.registration.event.PaymentPaidEvent;
+import com.hospital.registration.mapper.PaymentMapper;
+import com.hospital.registration.mapper.RegistrationMapper;
+import com.hospital.registration.service.MessageService;
+import com.hospital.registration.service.OutboxService;
+import com.hospital.registration.utils.IdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @title: PaymentServiceImplTest
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 支付回调突发重复回调测试
+ */
+class PaymentServiceImplTest {
+
+    private static final String TRANSACTION_NO = "PAY1";
+
+    private PaymentMapper paymentMapper;
+    private RegistrationMapper registrationMapper;
+    private ApplicationEventPublisher eventPublisher;
+    private PaymentServiceImpl paymentService;
+
+    @BeforeEach
+    void setUp() {
+        paymentMapper = mock(PaymentMapper.class);
+        registrationMapper = mock(RegistrationMapper.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        paymentService = new PaymentServiceImpl(mock(OutboxService.class), paymentMapper, registrationMapper,
+                mock(MessageService.class), mock(IdGenerator.class), eventPublisher);
+    }
+
+    @Test
+    void burstOfDuplicateCallbacksMarksPaidOnce() throws Exception {
+        // 模拟条件更新：只有第一次把PENDING改为PAID
+        AtomicBoolean paid = new AtomicBoolean();
+        when(paymentMapper.markPaidByTransactionNo(TRANSACTION_NO))
+                .thenAnswer(invocation -> paid.compareAndSet(false, true) ? 2 : 0);
+        when(paymentMapper.selectByTransactionNo(TRANSACTION_NO))
+                .thenAnswer(invocation -> payment(paid.get() ? PaymentStatus.PAID : PaymentStatus.PENDING));
+
+        int threads = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return paymentService.handlePaymentCallback(TRANSACTION_NO);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(paymentMapper, times(threads)).markPaidByTransactionNo(TRANSACTION_NO);
+        verify(eventPublisher, times(1)).publishEvent(any(PaymentPaidEvent.class));
+        Map<String, Object> stats = paymentService.getCallbackStats();
+        assertEquals(1L, stats.get("paidCount"));
+        assertEquals((long) threads - 1, stats.get("duplicateCount"));
+        assertEquals(0L, stats.get("rejectedCount"));
+    }
+
+    @Test
+    void callbackForCancelledRegistrationIsRejected() {
+        // 挂号已取消：条件更新不匹配任何行，支付记录仍为待支付
+        when(paymentMapper.markPaidByTransactionNo(TRANSACTION_NO)).thenReturn(0);
+        when(paymentMapper.selectByTransactionNo(TRANSACTION_NO)).thenReturn(payment(PaymentStatus.PENDING));
+        Registration registration = new Registration();
+        registration.setId(1L);
+        registration.setStatus(RegistrationStatus.CANCELLED);
+        when(registrationMapper.selectById(1L)).thenReturn(registration);
+
+        assertFalse(paymentService.handlePaymentCallback(TRANSACTION_NO));
+        verify(eventPublisher, never()).publishEvent(any(PaymentPaidEvent.class));
+        assertEquals(1L, paymentService.getCallbackStats().get("rejectedCount"));
+    }
+
+    private Payment payment(PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setTransactionNo(TRANSACTION_NO);
+        payment.setRegistrationId(1L);
+        payment.setPaymentStatus(status);
+        return payment;
+    }
+}
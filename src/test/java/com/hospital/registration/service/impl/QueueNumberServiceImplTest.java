@@ -0,0 +1,109 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.mapper.RegistrationMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @title: QueueNumberServiceImplTest
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 排队号分配并发测试（内存模拟Redis计数器脚本）
+ */
+class QueueNumberServiceImplTest {
+
+    private static final Long SCHEDULE_ID = 1L;
+
+    @Test
+    void concurrentAllocationsAreUnique() throws Exception {
+        RegistrationMapper registrationMapper = mock(RegistrationMapper.class);
+        when(registrationMapper.selectMaxQueueNumber(anyLong())).thenReturn(null);
+        QueueNumberServiceImpl service = new QueueNumberServiceImpl(new InMemoryCounterTemplate(), registrationMapper);
+
+        int threads = 16;
+        int perThread = 500;
+        Set<Integer> numbers = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        numbers.add(service.nextQueueNumber(SCHEDULE_ID));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, numbers.size());
+        assertEquals(1, numbers.stream().mapToInt(Integer::intValue).min().orElse(0));
+        assertEquals(threads * perThread, numbers.stream().mapToInt(Integer::intValue).max().orElse(0));
+    }
+
+    @Test
+    void reseedAfterCounterLossSkipsUncommittedNumbers() {
+        RegistrationMapper registrationMapper = mock(RegistrationMapper.class);
+        InMemoryCounterTemplate redisTemplate = new InMemoryCounterTemplate();
+        QueueNumberServiceImpl service = new QueueNumberServiceImpl(redisTemplate, registrationMapper);
+
+        int issued = 0;
+        for (int i = 0; i < 10; i++) {
+            issued = service.nextQueueNumber(SCHEDULE_ID);
+        }
+        // 只有前7个排队号已提交，计数器随后丢失
+        when(registrationMapper.selectMaxQueueNumber(SCHEDULE_ID)).thenReturn(7);
+        redisTemplate.counters.clear();
+
+        int next = service.nextQueueNumber(SCHEDULE_ID);
+        assertTrue(next > issued, "重新初始化后的排队号必须大于丢失前已分配的排队号");
+        assertEquals(7 + QueueNumberServiceImpl.SEED_MARGIN + 1, next);
+    }
+
+    /**
+     * 按脚本语义在内存中模拟计数器：INCR_SCRIPT只在计数器存在时自增，SEED_AND_INCR_SCRIPT先SET NX再自增
+     */
+    private static class InMemoryCounterTemplate extends StringRedisTemplate {
+
+        private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            String key = keys.get(0);
+            if (script.getScriptAsString().contains("'NX'")) {
+                long seed = Long.parseLong((String) args[1]);
+                return (T) Long.valueOf(counters.computeIfAbsent(key, k -> new AtomicLong(seed)).incrementAndGet());
+            }
+            AtomicLong counter = counters.get(key);
+            return (T) Long.valueOf(counter == null ? -1 : counter.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.hospital.registration.service.impl;
+
+import com.hospital.registration.common.TimeSlot;
+import com.hospital.registration.dto.BookingContext;
+import com.hospital.registration.dto.RegistrationDTO;
+import com.hospital.registration.entity.Registration;
+import com.hospital.registration.mapper.RegistrationMapper;
+import com.hospital.registration.mapper.ScheduleMapper;
+import com.hospital.registration.mapper.UserMapper;
+import com.hospital.registration.service.MessageService;
+import com.hospital.registration.service.PaymentService;
+import com.hospital.registration.service.QueueNumberService;
+import com.hospital.registration.service.ScheduleSlotUsageService;
+import com.hospital.registration.service.SlotInventoryService;
+import com.hospital.registration.utils.IdGenerator;
+import com.hospital.registration.vo.RegistrationVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * @title: RegistrationServiceImplTest
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 挂号创建语句数回归测试：一次挂号只执行条件扣减、上下文查询、插入三条挂号相关SQL
+ */
+class RegistrationServiceImplTest {
+
+    private static final Long SCHEDULE_ID = 10L;
+    private static final Long PATIENT_ID = 20L;
+    private static final String TICKET_NO = "BK1";
+
+    private RegistrationMapper registrationMapper;
+    private ScheduleMapper scheduleMapper;
+    private UserMapper userMapper;
+    private PaymentService paymentService;
+    private MessageService messageService;
+    private ScheduleSlotUsageService scheduleSlotUsageService;
+    private RegistrationServiceImpl registrationService;
+
+    @BeforeEach
+    void setUp() {
+        registrationMapper = mock(RegistrationMapper.class);
+        scheduleMapper = mock(ScheduleMapper.class);
+        userMapper = mock(UserMapper.class);
+        paymentService = mock(PaymentService.class);
+        messageService = mock(MessageService.class);
+        scheduleSlotUsageService = mock(ScheduleSlotUsageService.class);
+        QueueNumberService queueNumberService = mock(QueueNumberService.class);
+        IdGenerator idGenerator = mock(IdGenerator.class);
+        when(queueNumberService.nextQueueNumber(SCHEDULE_ID)).thenReturn(1);
+        when(idGenerator.nextNo("REG")).thenReturn("REG1");
+        registrationService = new RegistrationServiceImpl(registrationMapper, scheduleMapper, userMapper,
+                paymentService, messageService, mock(SlotInventoryService.class), queueNumberService,
+                scheduleSlotUsageService, idGenerator, mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void createAdmittedRegistrationIssuesFixedStatements() {
+        when(scheduleMapper.decreaseRemainingNumberForBooking(SCHEDULE_ID, "M_0800")).thenReturn(1);
+        when(scheduleMapper.selectBookingContext(SCHEDULE_ID, PATIENT_ID)).thenReturn(bookingContext());
+        when(registrationMapper.insert(any(Registration.class))).thenAnswer(invocation -> {
+            invocation.<Registration>getArgument(0).setId(100L);
+            return 1;
+        });
+
+        RegistrationVO registrationVO = registrationService.createAdmittedRegistration(registrationDTO(), TICKET_NO);
+
+        // 挂号相关SQL：凭证查重、条件扣减、上下文查询、插入，各一次，不再回查
+        verify(registrationMapper).selectByBookingTicketNo(TICKET_NO);
+        verify(scheduleMapper).decreaseRemainingNumberForBooking(SCHEDULE_ID, "M_0800");
+        verify(scheduleMapper).selectBookingContext(SCHEDULE_ID, PATIENT_ID);
+        verify(registrationMapper).insert(any(Registration.class));
+        verifyNoMoreInteractions(registrationMapper, scheduleMapper);
+        verifyNoInteractions(userMapper);
+
+        verify(scheduleSlotUsageService).increase(SCHEDULE_ID, "M_0800");
+        verify(paymentService).createPendingPayment(any(Registration.class), eq("WECHAT"));
+        verify(messageService).sendRegistrationSuccessNotice(any(Registration.class), eq("13800000000"),
+                eq("内科"), eq("张医生"));
+        verify(messageService, never()).sendRegistrationSuccessNotice(any(Registration.class), anyString(), anyString());
+
+        assertEquals(100L, registrationVO.getId());
+        assertEquals("REG1", registrationVO.getRegistrationNo());
+        assertEquals("患者甲", registrationVO.getPatientName());
+        assertEquals("内科", registrationVO.getDepartmentName());
+        assertNotNull(registrationVO.getCreateTime());
+        assertNotNull(registrationVO.getTimeSlotName());
+    }
+
+    @Test
+    void redeliveredTicketReturnsExistingRegistration() {
+        Registration existing = new Registration();
+        existing.setId(100L);
+        existing.setRegistrationNo("REG1");
+        when(registrationMapper.selectByBookingTicketNo(TICKET_NO)).thenReturn(existing);
+
+        RegistrationVO registrationVO = registrationService.createAdmittedRegistration(registrationDTO(), TICKET_NO);
+
+        assertEquals(100L, registrationVO.getId());
+        verify(registrationMapper, times(1)).selectByBookingTicketNo(TICKET_NO);
+        verifyNoMoreInteractions(registrationMapper);
+        verifyNoInteractions(scheduleMapper, paymentService, messageService, scheduleSlotUsageService);
+    }
+
+    private RegistrationDTO registrationDTO() {
+        RegistrationDTO registrationDTO = new RegistrationDTO();
+        registrationDTO.setScheduleId(SCHEDULE_ID);
+        registrationDTO.setPatientId(PATIENT_ID);
+        registrationDTO.setDetailTimeSlot("M_0800");
+        return registrationDTO;
+    }
+
+    private BookingContext bookingContext() {
+        BookingContext context = new BookingContext();
+        context.setScheduleId(SCHEDULE_ID);
+        context.setScheduleDate(LocalDate.now().plusDays(1));
+        context.setTimeSlot(TimeSlot.MORNING);
+        context.setRemainingNumber(9);
+        context.setStatus(1);
+        context.setDoctorId(1L);
+        context.setDoctorName("张医生");
+        context.setRegistrationFee(new BigDecimal("20.00"));
+        context.setDepartmentId(2L);
+        context.setDepartmentName("内科");
+        context.setPatientId(PATIENT_ID);
+        context.setPatientName("患者甲");
+        context.setPatientPhone("13800000000");
+        return context;
+    }
+}
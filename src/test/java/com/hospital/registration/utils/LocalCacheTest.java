@@ -0,0 +1,152 @@
+package com.hospital.registration.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @title: LocalCacheTest
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 进程内缓存并发加载测试
+ */
+class LocalCacheTest {
+
+    @Test
+    void concurrentMissesLoadOncePerKey() throws Exception {
+        LocalCache<Integer, String> cache = new LocalCache<>(60_000L, 100);
+        AtomicInteger loads = new AtomicInteger();
+        int keys = 8;
+        int threadsPerKey = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(keys * threadsPerKey);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < keys * threadsPerKey; i++) {
+                int key = i % keys;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get(key, k -> {
+                        loads.incrementAndGet();
+                        sleep(200);
+                        return "v" + k;
+                    });
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals("v" + (i % keys), futures.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(keys, loads.get());
+        assertEquals(keys, cache.size());
+    }
+
+    @Test
+    void invalidationDuringLoadSkipsWriteBack() throws Exception {
+        LocalCache<String, String> cache = new LocalCache<>(60_000L, 100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> stale = executor.submit(() -> cache.get("k", k -> {
+                loading.countDown();
+                await(release);
+                return "old";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            cache.invalidate("k");
+            release.countDown();
+
+            // 调用方拿到加载结果，但旧值不进入缓存
+            assertEquals("old", stale.get(5, TimeUnit.SECONDS));
+            assertNull(cache.get("k"));
+            assertEquals("new", cache.get("k", k -> "new"));
+            assertEquals("new", cache.get("k"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderFailureIsSharedAndNotCached() throws Exception {
+        LocalCache<String, String> cache = new LocalCache<>(60_000L, 100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("k", k -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                throw new IllegalStateException("db down");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> waiter = executor.submit(() -> cache.get("k", k -> {
+                loads.incrementAndGet();
+                return "unexpected";
+            }));
+            sleep(100);
+            release.countDown();
+
+            Exception firstError = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+            Exception waiterError = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertTrue(firstError.getCause() instanceof IllegalStateException);
+            assertTrue(waiterError.getCause() instanceof IllegalStateException);
+            assertEquals(1, loads.get());
+            assertEquals("ok", cache.get("k", k -> "ok"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fullCacheEvictsOldestBatchInsteadOfClearing() throws Exception {
+        LocalCache<Integer, String> cache = new LocalCache<>(60_000L, 20);
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, "v" + i);
+            sleep(2);
+        }
+        cache.put(20, "v20");
+
+        // 只淘汰最早写入的2个条目（maxSize的1/10）
+        assertEquals(19, cache.size());
+        assertNull(cache.get(0));
+        assertNull(cache.get(1));
+        for (int i = 2; i <= 20; i++) {
+            assertEquals("v" + i, cache.get(i));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hospital.registration.utils;
+
+import com.hospital.registration.config.IdGeneratorConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @title: SnowflakeIdGeneratorTest
+ * @author: Su
+ * @date: 2026/2/22
+ * @version: 1.0
+ * @description: 雪花ID生成器多线程唯一性测试
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static SnowflakeIdGenerator newGenerator(int workerId) {
+        IdGeneratorConfig config = new IdGeneratorConfig();
+        config.setWorkerId(workerId);
+        return new SnowflakeIdGenerator(config);
+    }
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        SnowflakeIdGenerator generator = newGenerator(7);
+        int threads = 16;
+        // 每线程生成量超过单毫秒4096个序列号，覆盖序列号用尽借用下一毫秒的分支
+        int perThread = 20000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    long last = -1L;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = generator.nextId();
+                        assertTrue(id > last, "同一线程内ID必须递增");
+                        last = id;
+                        ids.add(id);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, ids.size());
+        // 机器ID位于序列号之上的10位
+        ids.forEach(id -> assertEquals(7L, (id >> 12) & 0x3FF));
+    }
+
+    @Test
+    void generatorsWithDifferentWorkerIdsNeverCollide() throws Exception {
+        SnowflakeIdGenerator first = newGenerator(1);
+        SnowflakeIdGenerator second = newGenerator(2);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int perGenerator = 50000;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> a = executor.submit(() -> {
+                for (int i = 0; i < perGenerator; i++) {
+                    ids.add(first.nextId());
+                }
+            });
+            Future<?> b = executor.submit(() -> {
+                for (int i = 0; i < perGenerator; i++) {
+                    ids.add(second.nextId());
+                }
+            });
+            a.get(60, TimeUnit.SECONDS);
+            b.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2 * perGenerator, ids.size());
+    }
+
+    @Test
+    void nextNoKeepsPrefix() {
+        String no = newGenerator(3).nextNo("REG");
+        assertTrue(no.startsWith("REG"));
+        assertTrue(Long.parseLong(no.substring(3)) > 0);
+    }
+
+    @Test
+    void rejectsOutOfRangeWorkerId() {
+        assertThrows(IllegalArgumentException.class, () -> newGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> newGenerator(-1));
+    }
+}